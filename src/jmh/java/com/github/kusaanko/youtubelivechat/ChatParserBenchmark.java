@@ -0,0 +1,101 @@
+package com.github.kusaanko.youtubelivechat;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing get_live_chat and get_live_chat_replay responses.
+ * <p>
+ * The "items" counter is the number of parsed ChatItem per second, so ns/item is 1e9 / items.
+ * With -prof gc, bytes allocated per item is gc.alloc.rate.norm / items per response,
+ * and items per response is printed when a trial starts.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ChatParserBenchmark {
+    @Param({"idle", "normal", "emote_spam", "superchat", "replay"})
+    public String fixture;
+
+    private String json;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Items {
+        public long items;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.items = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        this.json = Fixtures.load(this.fixture + ".json");
+        ChatParser parser = new ChatParser(null, new ChatListener() {
+        });
+        parser.parse(this.json);
+        System.out.println(this.fixture + ": " + parser.itemCount + " items per response");
+    }
+
+    @Benchmark
+    public void parse(Items items, Blackhole blackhole) throws IOException {
+        this.parse(items, blackhole, false);
+    }
+
+    /**
+     * Lazy decoding mode, where items are dropped without using the fields decoded later.
+     */
+    @Benchmark
+    public void parseLazily(Items items, Blackhole blackhole) throws IOException {
+        this.parse(items, blackhole, true);
+    }
+
+    private void parse(Items items, Blackhole blackhole, boolean isLazy) throws IOException {
+        ChatParser parser = new ChatParser(null, new ChatListener() {
+            @Override
+            public void onMessage(ChatItem chatItem) {
+                blackhole.consume(chatItem);
+            }
+
+            @Override
+            public void onPaidMessage(ChatItem chatItem) {
+                blackhole.consume(chatItem);
+            }
+
+            @Override
+            public void onPaidSticker(ChatItem chatItem) {
+                blackhole.consume(chatItem);
+            }
+
+            @Override
+            public void onNewMember(ChatItem chatItem) {
+                blackhole.consume(chatItem);
+            }
+
+            @Override
+            public void onTickerPaidMessage(ChatItem chatItem) {
+                blackhole.consume(chatItem);
+            }
+        }, isLazy);
+        parser.parse(this.json);
+        items.items += parser.itemCount;
+        blackhole.consume(parser.continuation);
+    }
+
+    /**
+     * The whole response to Map, which moderation requests still use.
+     */
+    @Benchmark
+    public Map<String, Object> toJSON() {
+        return Util.toJSON(this.json);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Recorded responses and pages in src/jmh/resources/fixtures.
+ * Ids, names, messages and tokens in them are replaced with random values.
+ */
+final class Fixtures {
+    private Fixtures() {
+    }
+
+    /**
+     * Load a fixture.
+     *
+     * @param name File name
+     * @return Content
+     */
+    static String load(String name) {
+        try (InputStream in = Fixtures.class.getResourceAsStream("/fixtures/" + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("No fixture: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buff = new byte[8192];
+            int n;
+            while ((n = in.read(buff)) > 0) {
+                out.write(buff, 0, n);
+            }
+            return out.toString(StandardCharsets.UTF_8.name());
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.github.kusaanko.youtubelivechat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extracting initial data from the watch page and the live_chat page, like getInitialData() does.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PageExtractorBenchmark {
+    private String watchPage;
+    private String liveChatPage;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        this.watchPage = Fixtures.load("watch.html");
+        this.liveChatPage = Fixtures.load("live_chat.html");
+    }
+
+    @Benchmark
+    public PageExtractor watchPage() throws IOException {
+        PageExtractor extractor = YouTubeLiveChat.newWatchPageExtractor(IdType.VIDEO, false, true);
+        extractor.extract(new StringReader(this.watchPage));
+        return extractor;
+    }
+
+    @Benchmark
+    public PageExtractor liveChatPage() throws IOException {
+        PageExtractor extractor = YouTubeLiveChat.newLiveChatPageExtractor(true);
+        extractor.extract(new StringReader(this.liveChatPage));
+        return extractor;
+    }
+}
@@ -0,0 +1,68 @@
+package com.github.kusaanko.youtubelivechat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building requests: the payload json and the Authorization header.
+ * payloadToJSON serializes Maps like the old payload code, and pollPayload writes the template used by update().
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RequestBenchmark {
+    private static final String CONTINUATION =
+            "0ofMyANhGlhDaWtxSndvWVZVTjRlSGg0ZUhoNGVIaDRlSGg0ZUhoNGVIZ1NDM2g0ZUhoNGVIaDRlSGcY";
+
+    private Map<String, Object> payload;
+    private byte[] pollPayloadTemplate;
+    private JsonBuffer pollPayload;
+    private MessageDigest sha1;
+
+    @Setup(Level.Trial)
+    public void setup() throws NoSuchAlgorithmException {
+        // Same shape as the payload of get_live_chat
+        this.payload = new LinkedHashMap<>();
+        Map<String, Object> context = new LinkedHashMap<>();
+        Map<String, Object> client = new HashMap<>();
+        client.put("visitorData", "Cgt4eHh4eHh4eHh4eCiAgICAgICAgICA%3D");
+        client.put("userAgent", "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36");
+        client.put("clientName", "WEB");
+        client.put("clientVersion", "2.20231101.00.00");
+        client.put("gl", "US");
+        client.put("hl", "en");
+        context.put("client", client);
+        this.payload.put("context", context);
+        this.payload.put("continuation", CONTINUATION);
+        this.pollPayloadTemplate = YouTubeLiveChat.compilePollPayloadTemplate("Cgt4eHh4eHh4eHh4eCiAgICAgICAgICA%3D",
+                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36", "2.20231101.00.00", Locale.US);
+        this.pollPayload = new JsonBuffer(1024);
+        this.sha1 = MessageDigest.getInstance("SHA-1");
+    }
+
+    @Benchmark
+    public String payloadToJSON() {
+        return Util.toJSON(this.payload);
+    }
+
+    @Benchmark
+    public JsonBuffer pollPayload() {
+        return YouTubeLiveChat.writePollPayload(this.pollPayload, this.pollPayloadTemplate, CONTINUATION, false, 0);
+    }
+
+    @Benchmark
+    public String sapisidHash() {
+        return YouTubeLiveChat.getSAPISIDHash(this.sha1, System.currentTimeMillis() / 1000 + "",
+                "xxxxxxxxxxxxxxxx/xxxxxxxxxxxxxxxxxx", "https://www.youtube.com");
+    }
+}
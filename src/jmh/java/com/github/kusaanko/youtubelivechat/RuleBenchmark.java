@@ -0,0 +1,80 @@
+package com.github.kusaanko.youtubelivechat;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Matching a message against a blocklist.
+ * naiveContains lower-cases the message and calls contains() for each rule like hand-written filters,
+ * and ruleSet uses the automaton of ChatRuleSet.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RuleBenchmark {
+    @Param({"100", "5000"})
+    public int rules;
+
+    private List<String> phrases;
+    private ChatRuleSet ruleSet;
+    private String[] messages;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(0);
+        this.phrases = new ArrayList<>();
+        ChatRuleSet.Builder builder = new ChatRuleSet.Builder();
+        for (int i = 0; i < this.rules; i++) {
+            String phrase = randomWord(random, 5 + random.nextInt(6));
+            this.phrases.add(phrase);
+            builder.addPhrase(phrase, ModerationQueue.Action.DELETE);
+        }
+        this.ruleSet = builder.build();
+        this.messages = new String[256];
+        for (int i = 0; i < this.messages.length; i++) {
+            StringBuilder message = new StringBuilder();
+            int words = 3 + random.nextInt(15);
+            for (int j = 0; j < words; j++) {
+                message.append(randomWord(random, 2 + random.nextInt(8))).append(' ');
+            }
+            this.messages[i] = message.toString();
+        }
+    }
+
+    private static String randomWord(Random random, int length) {
+        StringBuilder word = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            word.append((char) ('a' + random.nextInt(26)));
+        }
+        return word.toString();
+    }
+
+    private String nextMessage() {
+        return this.messages[this.index++ & (this.messages.length - 1)];
+    }
+
+    @Benchmark
+    public boolean naiveContains() {
+        String message = this.nextMessage().toLowerCase(Locale.ROOT);
+        for (String phrase : this.phrases) {
+            if (message.contains(phrase)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public ChatRuleSet.Rule ruleSet() {
+        return this.ruleSet.match(this.nextMessage());
+    }
+}
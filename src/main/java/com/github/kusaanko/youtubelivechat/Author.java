@@ -0,0 +1,128 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Author of ChatItem.
+ * Authors are shared by all ChatItem of the same author through AuthorRegistry, so don't keep your own copies.
+ * This is immutable. When the name, icon or badges are changed, a new Author replaces this in the registry.
+ */
+public final class Author {
+    // List of AuthorType for each bitmask of AuthorType. There are only a few combinations.
+    private static final List<?>[] typeLists = new List<?>[1 << AuthorType.values().length];
+
+    private final String channelID;
+    private final String name;
+    private final String iconURL;
+    private final String memberBadgeIconURL;
+    private final int types;
+
+    Author(String channelID, String name, String iconURL, String memberBadgeIconURL, int types) {
+        this.channelID = channelID;
+        this.name = name;
+        this.iconURL = iconURL;
+        this.memberBadgeIconURL = memberBadgeIconURL;
+        this.types = types | typeBit(AuthorType.NORMAL);
+    }
+
+    /**
+     * Get channel id.
+     *
+     * @return Channel id
+     */
+    public String getChannelID() {
+        return this.channelID;
+    }
+
+    /**
+     * Get name.
+     *
+     * @return Name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Get icon url.
+     *
+     * @return Icon url
+     */
+    public String getIconURL() {
+        return this.iconURL;
+    }
+
+    /**
+     * Get member badge icon url.
+     *
+     * @return Member badge icon url, or null if this author is not a member
+     */
+    public String getMemberBadgeIconURL() {
+        return this.memberBadgeIconURL;
+    }
+
+    /**
+     * Get author types in unmodifiable List.
+     *
+     * @return List of AuthorType
+     */
+    @SuppressWarnings("unchecked")
+    public List<AuthorType> getTypes() {
+        List<?> list = typeLists[this.types];
+        if (list == null) {
+            List<AuthorType> types = new ArrayList<>();
+            for (AuthorType type : AuthorType.values()) {
+                if (this.is(type)) {
+                    types.add(type);
+                }
+            }
+            list = Collections.unmodifiableList(types);
+            // Racing threads build equal lists, so this doesn't need a lock
+            typeLists[this.types] = list;
+        }
+        return (List<AuthorType>) list;
+    }
+
+    /**
+     * Check if this author has the type.
+     *
+     * @param type AuthorType
+     * @return If this author has the type, returns true.
+     */
+    public boolean is(AuthorType type) {
+        return (this.types & typeBit(type)) != 0;
+    }
+
+    int getTypeBits() {
+        return this.types;
+    }
+
+    boolean equals(String channelID, String name, String iconURL, String memberBadgeIconURL, int types) {
+        return this.types == (types | typeBit(AuthorType.NORMAL))
+                && equals(this.channelID, channelID)
+                && equals(this.name, name)
+                && equals(this.iconURL, iconURL)
+                && equals(this.memberBadgeIconURL, memberBadgeIconURL);
+    }
+
+    static int typeBit(AuthorType type) {
+        return 1 << type.ordinal();
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    @Override
+    public String toString() {
+        return "Author{" +
+                "channelID='" + channelID + '\'' +
+                ", name='" + name + '\'' +
+                ", iconURL='" + iconURL + '\'' +
+                ", memberBadgeIconURL='" + memberBadgeIconURL + '\'' +
+                ", types=" + getTypes() +
+                '}';
+    }
+}
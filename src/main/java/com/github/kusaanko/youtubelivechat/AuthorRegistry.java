@@ -0,0 +1,162 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Registry of Author keyed by channel id.
+ * Parsers resolve authors through this, so all ChatItem of the same author share one Author.
+ * Authors which were not used recently are evicted when the registry is full (clock algorithm, approximately LRU).
+ * Evicted authors are still referenced by their ChatItem; they are just not shared with new items anymore.
+ * <p>
+ * This is thread-safe and can be shared by many YouTubeLiveChat. Lookups don't take a lock.
+ */
+public class AuthorRegistry {
+    /**
+     * Default max number of authors.
+     */
+    public static final int DEFAULT_CAPACITY = 65536;
+
+    private static final AuthorRegistry shared = new AuthorRegistry(DEFAULT_CAPACITY);
+
+    private final ConcurrentMap<String, Entry> authors;
+    // Channel ids in the order they were registered. The clock hand is the head.
+    private final Queue<String> clock;
+    // Only one thread evicts at a time, and the others don't wait for it
+    private final ReentrantLock evictionLock;
+    private final int capacity;
+
+    /**
+     * Initialize AuthorRegistry
+     *
+     * @param capacity Max number of authors
+     */
+    public AuthorRegistry(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be 1 or more!");
+        }
+        this.capacity = capacity;
+        this.authors = new ConcurrentHashMap<>();
+        this.clock = new ConcurrentLinkedQueue<>();
+        this.evictionLock = new ReentrantLock();
+    }
+
+    /**
+     * Get the registry shared by all YouTubeLiveChat which don't have their own.
+     *
+     * @return Shared AuthorRegistry
+     */
+    public static AuthorRegistry getShared() {
+        return shared;
+    }
+
+    /**
+     * Get an author.
+     *
+     * @param channelID Channel id
+     * @return Author, or null if not registered
+     */
+    public Author get(String channelID) {
+        Entry entry = this.authors.get(channelID);
+        if (entry == null) {
+            return null;
+        }
+        entry.use();
+        return entry.author;
+    }
+
+    /**
+     * Get the author who has these values. If the registered author has other values, it is replaced.
+     *
+     * @param channelID          Channel id
+     * @param name               Name
+     * @param iconURL            Icon url
+     * @param memberBadgeIconURL Member badge icon url
+     * @param types              Bitmask of AuthorType
+     * @return Author
+     */
+    Author resolve(String channelID, String name, String iconURL, String memberBadgeIconURL, int types) {
+        if (channelID == null) {
+            return new Author(null, name, iconURL, memberBadgeIconURL, types);
+        }
+        Entry entry = this.authors.get(channelID);
+        if (entry != null && entry.author.equals(channelID, name, iconURL, memberBadgeIconURL, types)) {
+            entry.use();
+            return entry.author;
+        }
+        Author author = new Author(channelID, name, iconURL, memberBadgeIconURL, types);
+        if (this.authors.put(channelID, new Entry(author)) == null) {
+            this.clock.add(channelID);
+            if (this.authors.size() > this.capacity) {
+                this.evict();
+            }
+        }
+        return author;
+    }
+
+    /**
+     * Remove authors until the size is the capacity.
+     * Authors used since the clock hand passed them last time get a second chance.
+     */
+    private void evict() {
+        if (!this.evictionLock.tryLock()) {
+            return;
+        }
+        try {
+            String channelID;
+            while (this.authors.size() > this.capacity && (channelID = this.clock.poll()) != null) {
+                Entry entry = this.authors.get(channelID);
+                if (entry == null) {
+                    // Removed by clear()
+                    continue;
+                }
+                if (entry.isUsed) {
+                    entry.isUsed = false;
+                    this.clock.add(channelID);
+                } else if (!this.authors.remove(channelID, entry)) {
+                    // Replaced at the same time
+                    this.clock.add(channelID);
+                }
+            }
+        } finally {
+            this.evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Get number of registered authors.
+     *
+     * @return Number of authors
+     */
+    public int size() {
+        return this.authors.size();
+    }
+
+    /**
+     * Remove all authors.
+     */
+    public void clear() {
+        this.authors.clear();
+        this.clock.clear();
+    }
+
+    private static final class Entry {
+        private final Author author;
+        // Set when used, cleared when the clock hand passes
+        private volatile boolean isUsed;
+
+        private Entry(Author author) {
+            this.author = author;
+        }
+
+        private void use() {
+            // Don't write the shared cache line if it is already set
+            if (!this.isUsed) {
+                this.isUsed = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,338 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Rolling statistics of a chat: messages per second, unique chatters, top emojis and paid totals
+ * in the last 10 seconds, 1 minute and 10 minutes.
+ * Add this to YouTubeLiveChat using addListener(). Items are counted at the time they are received.
+ * <p>
+ * Counters are kept in time buckets (1 second buckets for 10 seconds and 1 minute, 10 second buckets for 10 minutes),
+ * so getSnapshot() can be called from any thread at any time without blocking update().
+ */
+public class ChatAnalytics implements ChatListener {
+    /**
+     * Windows of statistics.
+     */
+    public enum Window {
+        /**
+         * Last 10 seconds.
+         */
+        TEN_SECONDS(10),
+        /**
+         * Last 1 minute.
+         */
+        ONE_MINUTE(60),
+        /**
+         * Last 10 minutes.
+         */
+        TEN_MINUTES(600);
+
+        private final int seconds;
+
+        Window(int seconds) {
+            this.seconds = seconds;
+        }
+
+        /**
+         * Get length of this window.
+         *
+         * @return Seconds
+         */
+        public int getSeconds() {
+            return this.seconds;
+        }
+    }
+
+    // 1 second buckets for TEN_SECONDS and ONE_MINUTE
+    private static final int FINE_BUCKETS = 64;
+    // 10 second buckets for TEN_MINUTES
+    private static final int COARSE_BUCKETS = 64;
+    private static final int COARSE_SECONDS = 10;
+
+    private final LongSupplier clock;
+    private final AtomicReferenceArray<Bucket> fine;
+    private final AtomicReferenceArray<Bucket> coarse;
+    // Last second each author sent an item
+    private final ConcurrentMap<String, Long> lastSeen;
+    private volatile long lastPrunedSecond;
+
+    /**
+     * Initialize ChatAnalytics
+     */
+    public ChatAnalytics() {
+        this(System::currentTimeMillis);
+    }
+
+    ChatAnalytics(LongSupplier clock) {
+        this.clock = clock;
+        this.fine = new AtomicReferenceArray<>(FINE_BUCKETS);
+        this.coarse = new AtomicReferenceArray<>(COARSE_BUCKETS);
+        this.lastSeen = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Count an item.
+     *
+     * @param chatItem ChatItem
+     */
+    public void add(ChatItem chatItem) {
+        long second = this.clock.getAsLong() / 1000;
+        Bucket fine = getBucket(this.fine, second);
+        Bucket coarse = getBucket(this.coarse, second / COARSE_SECONDS);
+        PaidAmount amount = null;
+        if (chatItem.getType() == ChatItemType.PAID_MESSAGE || chatItem.getType() == ChatItemType.PAID_STICKER) {
+            amount = PaidAmount.parse(chatItem.getPurchaseAmount());
+        }
+        fine.add(chatItem, amount);
+        coarse.add(chatItem, amount);
+        String channelID = chatItem.getAuthorChannelID();
+        if (channelID != null) {
+            this.lastSeen.put(channelID, second);
+        }
+        if (second - this.lastPrunedSecond >= COARSE_SECONDS) {
+            this.lastPrunedSecond = second;
+            long oldest = second - Window.TEN_MINUTES.seconds;
+            this.lastSeen.values().removeIf(seen -> seen <= oldest);
+        }
+    }
+
+    /**
+     * Get the bucket of the time, replacing an old bucket in the same slot.
+     */
+    private static Bucket getBucket(AtomicReferenceArray<Bucket> buckets, long time) {
+        int slot = (int) (time % buckets.length());
+        while (true) {
+            Bucket bucket = buckets.get(slot);
+            if (bucket != null && bucket.time >= time) {
+                // A late item for an old time is counted in the newer bucket
+                return bucket;
+            }
+            Bucket newBucket = new Bucket(time);
+            if (buckets.compareAndSet(slot, bucket, newBucket)) {
+                return newBucket;
+            }
+        }
+    }
+
+    /**
+     * Get statistics of a window. The current second is included.
+     *
+     * @param window Window
+     * @return Snapshot
+     */
+    public Snapshot getSnapshot(Window window) {
+        long second = this.clock.getAsLong() / 1000;
+        List<Bucket> buckets = new ArrayList<>();
+        if (window == Window.TEN_MINUTES) {
+            collect(this.coarse, second / COARSE_SECONDS, window.seconds / COARSE_SECONDS, buckets);
+        } else {
+            collect(this.fine, second, window.seconds, buckets);
+        }
+        long oldest = second - window.seconds;
+        int chatters = 0;
+        for (long seen : this.lastSeen.values()) {
+            if (seen > oldest) {
+                chatters++;
+            }
+        }
+        return new Snapshot(window, buckets, chatters);
+    }
+
+    private static void collect(AtomicReferenceArray<Bucket> buckets, long time, int count, List<Bucket> result) {
+        for (long t = time; t > time - count; t--) {
+            Bucket bucket = buckets.get((int) (t % buckets.length()));
+            if (bucket != null && bucket.time == t) {
+                result.add(bucket);
+            }
+        }
+    }
+
+    @Override
+    public void onMessage(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onPaidMessage(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onPaidSticker(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onNewMember(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    private static final class Bucket {
+        private final long time;
+        private final LongAdder messages = new LongAdder();
+        private final LongAdder paidItems = new LongAdder();
+        private final LongAdder newMembers = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> emojis = new ConcurrentHashMap<>();
+        private final ConcurrentMap<String, LongAdder> paidMicros = new ConcurrentHashMap<>();
+
+        private Bucket(long time) {
+            this.time = time;
+        }
+
+        private void add(ChatItem chatItem, PaidAmount amount) {
+            switch (chatItem.getType()) {
+                case PAID_MESSAGE:
+                case PAID_STICKER:
+                    this.paidItems.increment();
+                    break;
+                case NEW_MEMBER_MESSAGE:
+                    this.newMembers.increment();
+                    break;
+                default:
+                    this.messages.increment();
+                    break;
+            }
+            if (amount != null) {
+                this.paidMicros.computeIfAbsent(amount.getCurrency(), currency -> new LongAdder())
+                        .add(amount.getMicros());
+            }
+            List<Object> messageExtended = chatItem.getMessageExtended();
+            if (messageExtended != null) {
+                for (Object object : messageExtended) {
+                    if (object instanceof Emoji) {
+                        Emoji emoji = (Emoji) object;
+                        String key = emoji.shortcuts != null && !emoji.shortcuts.isEmpty()
+                                ? emoji.shortcuts.get(0) : emoji.emojiId;
+                        if (key != null) {
+                            this.emojis.computeIfAbsent(key, k -> new LongAdder()).increment();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Statistics of a window.
+     */
+    public static final class Snapshot {
+        private final Window window;
+        private final long messages;
+        private final long paidItems;
+        private final long newMembers;
+        private final int uniqueChatters;
+        private final Map<String, Long> emojis;
+        private final Map<String, Long> paidMicros;
+
+        private Snapshot(Window window, List<Bucket> buckets, int uniqueChatters) {
+            this.window = window;
+            this.uniqueChatters = uniqueChatters;
+            long messages = 0;
+            long paidItems = 0;
+            long newMembers = 0;
+            Map<String, Long> emojis = new HashMap<>();
+            Map<String, Long> paidMicros = new TreeMap<>();
+            for (Bucket bucket : buckets) {
+                messages += bucket.messages.sum();
+                paidItems += bucket.paidItems.sum();
+                newMembers += bucket.newMembers.sum();
+                bucket.emojis.forEach((key, count) -> emojis.merge(key, count.sum(), Long::sum));
+                bucket.paidMicros.forEach((key, micros) -> paidMicros.merge(key, micros.sum(), Long::sum));
+            }
+            this.messages = messages;
+            this.paidItems = paidItems;
+            this.newMembers = newMembers;
+            this.emojis = emojis;
+            this.paidMicros = Collections.unmodifiableMap(paidMicros);
+        }
+
+        public Window getWindow() {
+            return this.window;
+        }
+
+        /**
+         * Get number of messages (not including paid items and new members).
+         *
+         * @return Number of messages
+         */
+        public long getMessages() {
+            return this.messages;
+        }
+
+        /**
+         * Get messages per second in the window.
+         *
+         * @return Messages per second
+         */
+        public double getMessagesPerSecond() {
+            return (double) this.messages / this.window.seconds;
+        }
+
+        /**
+         * Get number of Super Chat and Super Stickers.
+         *
+         * @return Number of paid items
+         */
+        public long getPaidItems() {
+            return this.paidItems;
+        }
+
+        /**
+         * Get number of new members.
+         *
+         * @return Number of new members
+         */
+        public long getNewMembers() {
+            return this.newMembers;
+        }
+
+        /**
+         * Get number of authors who sent items in the window.
+         *
+         * @return Number of authors
+         */
+        public int getUniqueChatters() {
+            return this.uniqueChatters;
+        }
+
+        /**
+         * Get the most used emojis.
+         *
+         * @param limit Max number of emojis
+         * @return Shortcuts (or ids) and counts from the most used
+         */
+        public List<Map.Entry<String, Long>> getTopEmojis(int limit) {
+            List<Map.Entry<String, Long>> entries = new ArrayList<>(this.emojis.entrySet());
+            entries.sort(Map.Entry.<String, Long>comparingByValue().reversed());
+            return entries.subList(0, Math.min(limit, entries.size()));
+        }
+
+        /**
+         * Get total of Super Chat and Super Stickers by currency. Amounts which couldn't be parsed are not included.
+         *
+         * @return Map of ISO 4217 currency code and amount in micros
+         */
+        public Map<String, Long> getPaidMicros() {
+            return this.paidMicros;
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot{" +
+                    "window=" + window +
+                    ", messages=" + messages +
+                    ", paidItems=" + paidItems +
+                    ", newMembers=" + newMembers +
+                    ", uniqueChatters=" + uniqueChatters +
+                    ", topEmojis=" + getTopEmojis(5) +
+                    ", paidMicros=" + paidMicros +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Polls many YouTubeLiveChat on a small number of threads.
+ * Registered chats are kept in a timer wheel and update() of due chats is called on the executor.
+ * Each chat is updated by only one thread at a time, and chats are updated in the order they became due.
+ */
+public class ChatHub implements AutoCloseable {
+    private static final long TICK_MS = 50;
+    private static final int WHEEL_SIZE = 512;
+
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Semaphore permits;
+    private final List<Queue<Session>> wheel;
+    // Sessions waiting to be put into the wheel. Only the ticker thread touches the wheel.
+    private final Queue<Session> scheduleQueue;
+    private final ArrayDeque<Session> readyQueue;
+    private final ScheduledExecutorService ticker;
+    private final long startTime;
+    private long currentTick;
+    private volatile boolean isClosed;
+
+    /**
+     * Initialize ChatHub with its own thread pool.
+     *
+     * @param maxConcurrency Max number of update() running at the same time
+     */
+    public ChatHub(int maxConcurrency) {
+        this(createExecutor(maxConcurrency), maxConcurrency, true);
+    }
+
+    /**
+     * Initialize ChatHub using an executor.
+     * You can pass Executors.newVirtualThreadPerTaskExecutor() on Java 21 or later.
+     * The executor is not shut down by close().
+     *
+     * @param executor       Executor which runs update()
+     * @param maxConcurrency Max number of update() running at the same time
+     */
+    public ChatHub(Executor executor, int maxConcurrency) {
+        this(executor, maxConcurrency, false);
+    }
+
+    private ChatHub(Executor executor, int maxConcurrency, boolean ownsExecutor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive!");
+        }
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.permits = new Semaphore(maxConcurrency);
+        this.wheel = new ArrayList<>(WHEEL_SIZE);
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            this.wheel.add(new ArrayDeque<>());
+        }
+        this.scheduleQueue = new ConcurrentLinkedQueue<>();
+        this.readyQueue = new ArrayDeque<>();
+        this.startTime = System.currentTimeMillis();
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ChatHub-ticker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.ticker.scheduleAtFixedRate(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static ExecutorService createExecutor(int maxConcurrency) {
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ChatHub-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Register a chat. The first update() is called as soon as possible.
+     * After that, update() is called at YouTubeLiveChat#getNextPollDueMillis().
+     *
+     * @param liveChat Chat to poll
+     * @param callback Callback which receives the results of update()
+     * @return Session of the chat
+     */
+    public Session register(YouTubeLiveChat liveChat, Callback callback) {
+        return this.register(liveChat, callback, Session.ADAPTIVE_INTERVAL);
+    }
+
+    /**
+     * Register a chat with a fixed interval. The first update() is called as soon as possible.
+     *
+     * @param liveChat   Chat to poll
+     * @param callback   Callback which receives the results of update()
+     * @param intervalMs Interval between updates in milli seconds
+     * @return Session of the chat
+     */
+    public Session register(YouTubeLiveChat liveChat, Callback callback, long intervalMs) {
+        if (this.isClosed) {
+            throw new IllegalStateException("This hub is already closed!");
+        }
+        Session session = new Session(liveChat, callback);
+        if (intervalMs != Session.ADAPTIVE_INTERVAL) {
+            session.setIntervalMs(intervalMs);
+        }
+        session.nextDueMillis = System.currentTimeMillis();
+        this.scheduleQueue.add(session);
+        return session;
+    }
+
+    /**
+     * Stop polling all chats and stop threads owned by this hub.
+     * Running update() is not interrupted.
+     */
+    @Override
+    public void close() {
+        this.isClosed = true;
+        this.ticker.shutdownNow();
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private void tick() {
+        try {
+            long nowTick = this.toTick(System.currentTimeMillis());
+            Session session;
+            while ((session = this.scheduleQueue.poll()) != null) {
+                if (session.isCancelled) {
+                    continue;
+                }
+                session.dueTick = this.toTick(session.nextDueMillis);
+                if (session.dueTick <= this.currentTick) {
+                    this.readyQueue.add(session);
+                } else {
+                    this.wheel.get((int) (session.dueTick % WHEEL_SIZE)).add(session);
+                }
+            }
+            // Visit each slot at most once even if the ticker is late
+            long from = Math.max(this.currentTick + 1, nowTick - WHEEL_SIZE + 1);
+            for (long t = from; t <= nowTick; t++) {
+                Iterator<Session> iterator = this.wheel.get((int) (t % WHEEL_SIZE)).iterator();
+                while (iterator.hasNext()) {
+                    Session s = iterator.next();
+                    if (s.isCancelled) {
+                        iterator.remove();
+                    } else if (s.dueTick <= nowTick) {
+                        iterator.remove();
+                        this.readyQueue.add(s);
+                    }
+                }
+            }
+            this.currentTick = Math.max(this.currentTick, nowTick);
+            this.dispatch();
+        } catch (RuntimeException exception) {
+            // Never let the ticker die
+            exception.printStackTrace();
+        }
+    }
+
+    private void dispatch() {
+        while (!this.readyQueue.isEmpty() && this.permits.tryAcquire()) {
+            Session session = this.readyQueue.poll();
+            if (session.isCancelled) {
+                this.permits.release();
+                continue;
+            }
+            try {
+                this.executor.execute(session::run);
+            } catch (RejectedExecutionException exception) {
+                this.permits.release();
+                this.readyQueue.addFirst(session);
+                return;
+            }
+        }
+    }
+
+    private long toTick(long millis) {
+        return (millis - this.startTime) / TICK_MS;
+    }
+
+    /**
+     * Receives the results of update() called by ChatHub.
+     * Methods are called on a worker thread, but never at the same time for the same chat.
+     */
+    public interface Callback {
+        /**
+         * Called after update() succeeded.
+         *
+         * @param liveChat Updated chat
+         */
+        void onUpdate(YouTubeLiveChat liveChat);
+
+        /**
+         * Called when update() failed. The chat is polled again after the interval unless the chat is closed.
+         *
+         * @param liveChat  Chat
+         * @param exception Error
+         */
+        default void onError(YouTubeLiveChat liveChat, Exception exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    /**
+     * A chat registered to ChatHub.
+     */
+    public class Session {
+        /**
+         * Interval which follows YouTubeLiveChat#getNextPollDueMillis().
+         */
+        public static final long ADAPTIVE_INTERVAL = -1;
+
+        private final YouTubeLiveChat liveChat;
+        private final Callback callback;
+        private volatile long intervalMs;
+        private volatile long nextDueMillis;
+        private volatile boolean isCancelled;
+        private long dueTick;
+
+        private Session(YouTubeLiveChat liveChat, Callback callback) {
+            this.liveChat = liveChat;
+            this.callback = callback;
+            this.intervalMs = ADAPTIVE_INTERVAL;
+        }
+
+        private void run() {
+            try {
+                if (!this.isCancelled) {
+                    this.liveChat.update();
+                    this.callback.onUpdate(this.liveChat);
+                }
+            } catch (IOException | RuntimeException exception) {
+                this.callback.onError(this.liveChat, exception);
+            } finally {
+                ChatHub.this.permits.release();
+                if (this.liveChat.isClosed()) {
+                    // update() of a closed chat always fails
+                    this.isCancelled = true;
+                }
+                if (!this.isCancelled && !ChatHub.this.isClosed) {
+                    long now = System.currentTimeMillis();
+                    if (this.intervalMs == ADAPTIVE_INTERVAL) {
+                        this.nextDueMillis = Math.max(now, this.liveChat.getNextPollDueMillis());
+                    } else {
+                        this.nextDueMillis = now + this.intervalMs;
+                    }
+                    ChatHub.this.scheduleQueue.add(this);
+                }
+                // Start ready sessions with the released permit now instead of at the next tick.
+                // readyQueue is touched only by the ticker thread.
+                try {
+                    ChatHub.this.ticker.execute(ChatHub.this::dispatch);
+                } catch (RejectedExecutionException ignore) {
+                    // The hub is closed
+                }
+            }
+        }
+
+        /**
+         * Get the chat.
+         *
+         * @return Chat
+         */
+        public YouTubeLiveChat getLiveChat() {
+            return this.liveChat;
+        }
+
+        /**
+         * Get the time when the next update() is called.
+         *
+         * @return Time in UNIX time (milli seconds)
+         */
+        public long getNextDueMillis() {
+            return this.nextDueMillis;
+        }
+
+        /**
+         * Get interval between updates.
+         *
+         * @return Interval in milli seconds or ADAPTIVE_INTERVAL
+         */
+        public long getIntervalMs() {
+            return this.intervalMs;
+        }
+
+        /**
+         * Set interval between updates. This takes effect from the next schedule.
+         *
+         * @param intervalMs Interval in milli seconds or ADAPTIVE_INTERVAL
+         */
+        public void setIntervalMs(long intervalMs) {
+            if (intervalMs < 0 && intervalMs != ADAPTIVE_INTERVAL) {
+                throw new IllegalArgumentException("intervalMs must not be negative!");
+            }
+            this.intervalMs = intervalMs;
+        }
+
+        /**
+         * Stop polling this chat. Running update() is not interrupted.
+         */
+        public void cancel() {
+            this.isCancelled = true;
+        }
+
+        /**
+         * Check this session is cancelled.
+         *
+         * @return If this session is cancelled, returns true.
+         */
+        public boolean isCancelled() {
+            return this.isCancelled;
+        }
+    }
+}
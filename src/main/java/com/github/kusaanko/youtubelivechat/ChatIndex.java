@@ -0,0 +1,618 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.*;
+
+/**
+ * In-memory full-text index of ChatItem. Add this to YouTubeLiveChat (one or more) using addListener(),
+ * and items are indexed while update() parses them.
+ * <p>
+ * Words of messages and emoji shortcuts are indexed, ignoring case and Unicode compatibility differences.
+ * Chinese, Japanese and Korean text is indexed by two characters, so any part of the text of two or more
+ * characters can be searched.
+ * Items are stored in segments. When the estimated memory usage exceeds the limit, the oldest segments are removed.
+ * <p>
+ * This is thread-safe, and searching doesn't stop indexing.
+ */
+public class ChatIndex implements ChatListener {
+    /**
+     * Default max memory usage in bytes.
+     */
+    public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+    // Max number of items in a segment
+    static final int SEGMENT_SIZE = 16384;
+    // Prefix of terms of author channel ids, which never appears in words
+    private static final String AUTHOR_PREFIX = "\u0000";
+    private static final ChatItemType[] TYPES = ChatItemType.values();
+
+    private final long maxBytes;
+    // Sealed segments from oldest to newest
+    private volatile SealedSegment[] segments;
+    private ActiveSegment active;
+    private long sealedBytes;
+
+    /**
+     * Initialize ChatIndex with DEFAULT_MAX_BYTES
+     */
+    public ChatIndex() {
+        this(DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * Initialize ChatIndex
+     *
+     * @param maxBytes Max estimated memory usage in bytes, including ChatItem
+     */
+    public ChatIndex(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive!");
+        }
+        this.maxBytes = maxBytes;
+        this.segments = new SealedSegment[0];
+        this.active = new ActiveSegment();
+    }
+
+    /**
+     * Add an item.
+     *
+     * @param chatItem ChatItem
+     */
+    public synchronized void add(ChatItem chatItem) {
+        this.active.add(chatItem);
+        if (this.active.size == SEGMENT_SIZE) {
+            this.seal();
+        }
+    }
+
+    private void seal() {
+        SealedSegment sealed = new SealedSegment(this.active);
+        this.active = new ActiveSegment();
+        ArrayList<SealedSegment> segments = new ArrayList<>(Arrays.asList(this.segments));
+        segments.add(sealed);
+        this.sealedBytes += sealed.bytes;
+        while (this.sealedBytes > this.maxBytes && segments.size() > 1) {
+            this.sealedBytes -= segments.remove(0).bytes;
+        }
+        this.segments = segments.toArray(new SealedSegment[0]);
+    }
+
+    /**
+     * Search items. Newer items come first.
+     *
+     * @param query Query
+     * @return Matched items
+     */
+    public List<ChatItem> search(Query query) {
+        List<String> terms = query.getTerms();
+        List<ChatItem> result = new ArrayList<>();
+        ActiveSnapshot snapshot;
+        synchronized (this) {
+            snapshot = this.active.snapshot(terms);
+        }
+        if (snapshot != null) {
+            snapshot.search(query, result);
+        }
+        SealedSegment[] segments = this.segments;
+        for (int i = segments.length - 1; i >= 0 && result.size() < query.limit; i--) {
+            segments[i].search(query, terms, result);
+        }
+        return result;
+    }
+
+    /**
+     * Get number of indexed items.
+     *
+     * @return Number of items
+     */
+    public synchronized int size() {
+        int size = this.active.size;
+        for (SealedSegment segment : this.segments) {
+            size += segment.items.length;
+        }
+        return size;
+    }
+
+    /**
+     * Get estimated memory usage of removable segments in bytes. The newest items which are not sealed yet
+     * are not included.
+     *
+     * @return Estimated memory usage in bytes
+     */
+    public synchronized long getEstimatedBytes() {
+        return this.sealedBytes;
+    }
+
+    /**
+     * Remove all items.
+     */
+    public synchronized void clear() {
+        this.segments = new SealedSegment[0];
+        this.active = new ActiveSegment();
+        this.sealedBytes = 0;
+    }
+
+    @Override
+    public void onMessage(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onPaidMessage(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onPaidSticker(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    @Override
+    public void onNewMember(ChatItem chatItem) {
+        this.add(chatItem);
+    }
+
+    /**
+     * Get terms of an item.
+     */
+    static void tokenize(ChatItem chatItem, Collection<String> terms) {
+        if (chatItem.getMessage() != null) {
+            tokenize(chatItem.getMessage(), terms);
+        }
+        List<Object> messageExtended = chatItem.getMessageExtended();
+        if (messageExtended != null) {
+            for (Object object : messageExtended) {
+                if (object instanceof Emoji && ((Emoji) object).shortcuts != null) {
+                    for (String shortcut : ((Emoji) object).shortcuts) {
+                        terms.add(ChatRuleSet.fold(shortcut));
+                    }
+                }
+            }
+        }
+        String channelID = chatItem.getAuthorChannelID();
+        if (channelID != null) {
+            terms.add(AUTHOR_PREFIX + channelID);
+        }
+    }
+
+    /**
+     * Split text into words. Runs of Chinese, Japanese and Korean characters are split into bigrams.
+     */
+    static void tokenize(String text, Collection<String> terms) {
+        text = ChatRuleSet.fold(text);
+        int start = -1;
+        boolean isCJK = false;
+        for (int i = 0; i <= text.length(); ) {
+            int codePoint = i < text.length() ? text.codePointAt(i) : ' ';
+            boolean isWordChar = Character.isLetterOrDigit(codePoint);
+            boolean isCJKChar = isWordChar && isCJK(codePoint);
+            if (start >= 0 && (!isWordChar || isCJKChar != isCJK)) {
+                addWord(text, start, i, isCJK, terms);
+                start = -1;
+            }
+            if (isWordChar && start < 0) {
+                start = i;
+                isCJK = isCJKChar;
+            }
+            i += Character.charCount(codePoint);
+        }
+    }
+
+    private static void addWord(String text, int start, int end, boolean isCJK, Collection<String> terms) {
+        if (!isCJK || text.offsetByCodePoints(start, 1) == end) {
+            terms.add(text.substring(start, end));
+            return;
+        }
+        for (int i = start; ; ) {
+            int second = text.offsetByCodePoints(i, 1);
+            if (second == end) {
+                break;
+            }
+            terms.add(text.substring(i, text.offsetByCodePoints(second, 1)));
+            i = second;
+        }
+    }
+
+    private static boolean isCJK(int codePoint) {
+        if (codePoint < 0x1100) {
+            return false;
+        }
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA || script == Character.UnicodeScript.HANGUL;
+    }
+
+    /**
+     * Check filters of a query except terms.
+     */
+    private static boolean accepts(Query query, long timestamp, byte type) {
+        return timestamp >= query.from && timestamp < query.to
+                && (query.types == null || query.types.contains(TYPES[type]));
+    }
+
+    /**
+     * Newest items which are being indexed. Accessed while holding the lock of ChatIndex.
+     */
+    private static final class ActiveSegment {
+        private final Map<String, int[]> postings = new HashMap<>();
+        private ChatItem[] items = new ChatItem[256];
+        private long[] timestamps = new long[256];
+        private byte[] types = new byte[256];
+        private int size;
+        private long bytes;
+        private final Set<String> terms = new LinkedHashSet<>();
+
+        private void add(ChatItem chatItem) {
+            if (this.size == this.items.length) {
+                this.items = Arrays.copyOf(this.items, this.size * 2);
+                this.timestamps = Arrays.copyOf(this.timestamps, this.size * 2);
+                this.types = Arrays.copyOf(this.types, this.size * 2);
+            }
+            int doc = this.size++;
+            this.items[doc] = chatItem;
+            this.timestamps[doc] = chatItem.getTimestamp();
+            this.types[doc] = (byte) chatItem.getType().ordinal();
+            this.bytes += estimateBytes(chatItem);
+            this.terms.clear();
+            tokenize(chatItem, this.terms);
+            for (String term : this.terms) {
+                // postings[0] is the number of docs
+                int[] docs = this.postings.get(term);
+                if (docs == null) {
+                    docs = new int[4];
+                    this.postings.put(term, docs);
+                } else if (docs[0] + 1 == docs.length) {
+                    docs = Arrays.copyOf(docs, docs.length * 2);
+                    this.postings.put(term, docs);
+                }
+                docs[++docs[0]] = doc;
+            }
+        }
+
+        /**
+         * Capture the items and the postings of terms. Written part of arrays is never changed,
+         * so the snapshot can be searched without the lock.
+         *
+         * @return Snapshot, or null if any term is not indexed
+         */
+        private ActiveSnapshot snapshot(List<String> terms) {
+            int[][] lists = new int[terms.size()][];
+            int[] counts = new int[lists.length];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = this.postings.get(terms.get(i));
+                if (lists[i] == null) {
+                    return null;
+                }
+                counts[i] = lists[i][0];
+            }
+            return new ActiveSnapshot(this.items, this.timestamps, this.types, this.size, lists, counts);
+        }
+    }
+
+    /**
+     * Items and postings of ActiveSegment at a point. Searched without the lock of ChatIndex.
+     */
+    private static final class ActiveSnapshot {
+        private final ChatItem[] items;
+        private final long[] timestamps;
+        private final byte[] types;
+        private final int size;
+        private final int[][] lists;
+        private final int[] counts;
+
+        private ActiveSnapshot(ChatItem[] items, long[] timestamps, byte[] types, int size,
+                               int[][] lists, int[] counts) {
+            this.items = items;
+            this.timestamps = timestamps;
+            this.types = types;
+            this.size = size;
+            this.lists = lists;
+            this.counts = counts;
+        }
+
+        private void search(Query query, List<ChatItem> result) {
+            if (this.lists.length == 0) {
+                for (int doc = this.size - 1; doc >= 0 && result.size() < query.limit; doc--) {
+                    if (accepts(query, this.timestamps[doc], this.types[doc])) {
+                        result.add(this.items[doc]);
+                    }
+                }
+                return;
+            }
+            int[][] lists = new int[this.lists.length][];
+            for (int i = 0; i < lists.length; i++) {
+                lists[i] = Arrays.copyOfRange(this.lists[i], 1, this.counts[i] + 1);
+            }
+            for (int doc : intersect(lists)) {
+                if (result.size() >= query.limit) {
+                    return;
+                }
+                if (accepts(query, this.timestamps[doc], this.types[doc])) {
+                    result.add(this.items[doc]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Immutable segment. Postings are doc ids encoded as variable length deltas.
+     */
+    private static final class SealedSegment {
+        private final ChatItem[] items;
+        private final long[] timestamps;
+        private final byte[] types;
+        private final long minTimestamp;
+        private final long maxTimestamp;
+        // Sorted terms and their postings[postingStart[i], postingStart[i + 1])
+        private final String[] terms;
+        private final int[] postingStart;
+        private final int[] postingCount;
+        private final byte[] postings;
+        private final long bytes;
+
+        private SealedSegment(ActiveSegment active) {
+            this.items = Arrays.copyOf(active.items, active.size);
+            this.timestamps = Arrays.copyOf(active.timestamps, active.size);
+            this.types = Arrays.copyOf(active.types, active.size);
+            long min = Long.MAX_VALUE;
+            long max = Long.MIN_VALUE;
+            for (long timestamp : this.timestamps) {
+                min = Math.min(min, timestamp);
+                max = Math.max(max, timestamp);
+            }
+            this.minTimestamp = min;
+            this.maxTimestamp = max;
+            this.terms = active.postings.keySet().toArray(new String[0]);
+            Arrays.sort(this.terms);
+            this.postingStart = new int[this.terms.length + 1];
+            this.postingCount = new int[this.terms.length];
+            byte[] postings = new byte[1024];
+            int length = 0;
+            long termBytes = 0;
+            for (int i = 0; i < this.terms.length; i++) {
+                int[] docs = active.postings.get(this.terms[i]);
+                this.postingStart[i] = length;
+                this.postingCount[i] = docs[0];
+                int previous = 0;
+                for (int j = 1; j <= docs[0]; j++) {
+                    if (length + 5 > postings.length) {
+                        postings = Arrays.copyOf(postings, postings.length * 2);
+                    }
+                    int delta = docs[j] - previous;
+                    previous = docs[j];
+                    while ((delta & ~0x7F) != 0) {
+                        postings[length++] = (byte) ((delta & 0x7F) | 0x80);
+                        delta >>>= 7;
+                    }
+                    postings[length++] = (byte) delta;
+                }
+                termBytes += 48 + this.terms[i].length();
+            }
+            this.postingStart[this.terms.length] = length;
+            this.postings = Arrays.copyOf(postings, length);
+            this.bytes = active.bytes + termBytes + length + 13L * this.items.length;
+        }
+
+        private int[] decode(int term) {
+            int[] docs = new int[this.postingCount[term]];
+            int position = this.postingStart[term];
+            int doc = 0;
+            for (int i = 0; i < docs.length; i++) {
+                int delta = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = this.postings[position++];
+                    delta |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                doc += delta;
+                docs[i] = doc;
+            }
+            return docs;
+        }
+
+        private void search(Query query, List<String> terms, List<ChatItem> result) {
+            if (this.maxTimestamp < query.from || this.minTimestamp >= query.to) {
+                return;
+            }
+            if (terms.isEmpty()) {
+                for (int doc = this.items.length - 1; doc >= 0 && result.size() < query.limit; doc--) {
+                    if (accepts(query, this.timestamps[doc], this.types[doc])) {
+                        result.add(this.items[doc]);
+                    }
+                }
+                return;
+            }
+            int[] termIds = new int[terms.size()];
+            for (int i = 0; i < termIds.length; i++) {
+                termIds[i] = Arrays.binarySearch(this.terms, terms.get(i));
+                if (termIds[i] < 0) {
+                    return;
+                }
+            }
+            // Decode the shortest postings and remove docs which are not in the others
+            int shortest = 0;
+            for (int i = 1; i < termIds.length; i++) {
+                if (this.postingCount[termIds[i]] < this.postingCount[termIds[shortest]]) {
+                    shortest = i;
+                }
+            }
+            int[] docs = this.decode(termIds[shortest]);
+            int count = docs.length;
+            for (int i = 0; i < termIds.length && count > 0; i++) {
+                if (i != shortest) {
+                    count = this.retain(termIds[i], docs, count);
+                }
+            }
+            for (int i = count - 1; i >= 0 && result.size() < query.limit; i--) {
+                int doc = docs[i];
+                if (accepts(query, this.timestamps[doc], this.types[doc])) {
+                    result.add(this.items[doc]);
+                }
+            }
+        }
+
+        /**
+         * Keep docs[0, count) which are in the postings of the term.
+         *
+         * @return Number of kept docs
+         */
+        private int retain(int term, int[] docs, int count) {
+            int position = this.postingStart[term];
+            int end = this.postingStart[term + 1];
+            int previous = 0;
+            int doc = -1;
+            int kept = 0;
+            for (int k = 0; k < count; k++) {
+                int target = docs[k];
+                while (doc < target && position < end) {
+                    int delta = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = this.postings[position++];
+                        delta |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    previous += delta;
+                    doc = previous;
+                }
+                if (doc == target) {
+                    docs[kept++] = target;
+                } else if (doc < target) {
+                    break;
+                }
+            }
+            return kept;
+        }
+    }
+
+    /**
+     * Intersect sorted doc ids.
+     *
+     * @return Doc ids in descending order
+     */
+    private static int[] intersect(int[][] lists) {
+        Arrays.sort(lists, Comparator.comparingInt(list -> list.length));
+        int[] docs = lists[0];
+        int count = docs.length;
+        for (int i = 1; i < lists.length && count > 0; i++) {
+            int[] other = lists[i];
+            int kept = 0;
+            int j = 0;
+            for (int k = 0; k < count; k++) {
+                int doc = docs[k];
+                while (j < other.length && other[j] < doc) {
+                    j++;
+                }
+                if (j < other.length && other[j] == doc) {
+                    docs[kept++] = doc;
+                }
+            }
+            count = kept;
+        }
+        int[] result = new int[count];
+        for (int i = 0; i < count; i++) {
+            result[i] = docs[count - 1 - i];
+        }
+        return result;
+    }
+
+    private static long estimateBytes(ChatItem chatItem) {
+        String message = chatItem.getMessage();
+        return 160 + (message != null ? 40 + message.length() * 2L : 0);
+    }
+
+    /**
+     * Search condition. All conditions must match.
+     */
+    public static class Query {
+        private final List<String> words = new ArrayList<>();
+        private final List<String> emojis = new ArrayList<>();
+        private String authorChannelID;
+        private EnumSet<ChatItemType> types;
+        private long from = Long.MIN_VALUE;
+        private long to = Long.MAX_VALUE;
+        private int limit = 100;
+
+        /**
+         * Items which contain all words in the text.
+         *
+         * @param text Words
+         * @return This query
+         */
+        public Query words(String text) {
+            tokenize(text, this.words);
+            return this;
+        }
+
+        /**
+         * Items which contain the emoji.
+         *
+         * @param shortcut Shortcut of the emoji (for example :smile:)
+         * @return This query
+         */
+        public Query emoji(String shortcut) {
+            this.emojis.add(ChatRuleSet.fold(shortcut));
+            return this;
+        }
+
+        /**
+         * Items of the author.
+         *
+         * @param authorChannelID Channel id of the author
+         * @return This query
+         */
+        public Query author(String authorChannelID) {
+            this.authorChannelID = authorChannelID;
+            return this;
+        }
+
+        /**
+         * Items of the types.
+         *
+         * @param type  Type
+         * @param types Other types
+         * @return This query
+         */
+        public Query types(ChatItemType type, ChatItemType... types) {
+            this.types = EnumSet.of(type, types);
+            return this;
+        }
+
+        /**
+         * Items whose timestamp is in [from, to). Timestamps are in microseconds like ChatItem#getTimestamp().
+         *
+         * @param from Start (inclusive)
+         * @param to   End (exclusive)
+         * @return This query
+         */
+        public Query between(long from, long to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        /**
+         * Max number of items. Default is 100.
+         *
+         * @param limit Max number of items
+         * @return This query
+         */
+        public Query limit(int limit) {
+            if (limit < 0) {
+                throw new IllegalArgumentException("limit must not be negative!");
+            }
+            this.limit = limit;
+            return this;
+        }
+
+        private List<String> getTerms() {
+            List<String> terms = new ArrayList<>(new LinkedHashSet<>(this.words));
+            terms.addAll(this.emojis);
+            if (this.authorChannelID != null) {
+                terms.add(AUTHOR_PREFIX + this.authorChannelID);
+            }
+            return terms;
+        }
+    }
+}
@@ -1,20 +1,18 @@
 package com.github.kusaanko.youtubelivechat;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 
 public class ChatItem {
+    // Author without any values
+    private static final Author UNKNOWN_AUTHOR = new Author(null, null, null, null, 0);
+
     protected ChatItemType type;
-    protected String authorName;
-    protected String authorChannelID;
+    protected Author author;
     protected String message;
     protected List<Object> messageExtended;
-    protected String authorIconURL;
     protected String id;
     protected long timestamp;
-    protected List<AuthorType> authorType;
-    protected String memberBadgeIconURL;
     //For paid message
     protected int bodyBackgroundColor;
     protected int bodyTextColor;
@@ -31,13 +29,17 @@ public class ChatItem {
     protected int fullDurationSec;
     //If moderator enabled
     protected String contextMenuParams;
-    protected String pinToTopParams;
-    protected String chatDeleteParams; // can be executed by author too
-    protected String timeBanParams;
-    protected String userBanParams;
-    protected String userUnbanParams;
+    //Volatile because the context menu may be fetched by another thread (ContextMenuPrefetcher)
+    protected volatile String pinToTopParams;
+    protected volatile String chatDeleteParams; // can be executed by author too
+    protected volatile String timeBanParams;
+    protected volatile String userBanParams;
+    protected volatile String userUnbanParams;
     //Connected chat
     protected YouTubeLiveChat liveChat;
+    //Response and position of the renderer whose fields are not decoded yet in lazy decoding mode
+    int lazyStart;
+    volatile String lazyJson;
 
     /**
      * @deprecated {@link #ChatItem(YouTubeLiveChat liveChat)}
@@ -48,12 +50,26 @@ public class ChatItem {
     }
 
     protected ChatItem(YouTubeLiveChat liveChat) {
-        this.authorType = new ArrayList<>();
-        this.authorType.add(AuthorType.NORMAL);
+        this.author = UNKNOWN_AUTHOR;
         this.type = ChatItemType.MESSAGE;
         this.liveChat = liveChat;
     }
 
+    /**
+     * Decode fields which were kept by lazy decoding mode. Does nothing if they are already decoded.
+     */
+    void decode() {
+        if (this.lazyJson != null) {
+            synchronized (this) {
+                String json = this.lazyJson;
+                if (json != null) {
+                    ChatParser.decodeLazily(this, json, this.lazyStart);
+                    this.lazyJson = null;
+                }
+            }
+        }
+    }
+
     /**
      * Get type of this item.
      *
@@ -63,13 +79,24 @@ public class ChatItem {
         return this.type;
     }
 
+    /**
+     * Get author. Authors are shared between ChatItem of the same author.
+     *
+     * @return Author
+     */
+    public Author getAuthor() {
+        this.decode();
+        return this.author;
+    }
+
     /**
      * Get author name.
      *
      * @return Author name
      */
     public String getAuthorName() {
-        return this.authorName;
+        this.decode();
+        return this.author.getName();
     }
 
     /**
@@ -78,7 +105,7 @@ public class ChatItem {
      * @return Author's channel id
      */
     public String getAuthorChannelID() {
-        return this.authorChannelID;
+        return this.author.getChannelID();
     }
 
     /**
@@ -106,7 +133,8 @@ public class ChatItem {
      * @return Author's icon url
      */
     public String getAuthorIconURL() {
-        return this.authorIconURL;
+        this.decode();
+        return this.author.getIconURL();
     }
 
     /**
@@ -128,12 +156,13 @@ public class ChatItem {
     }
 
     /**
-     * Get author types in List.
+     * Get author types in unmodifiable List.
      *
      * @return List of AuthorType
      */
     public List<AuthorType> getAuthorType() {
-        return this.authorType;
+        this.decode();
+        return this.author.getTypes();
     }
 
     /**
@@ -142,7 +171,8 @@ public class ChatItem {
      * @return If this message's author is verified, returns true.
      */
     public boolean isAuthorVerified() {
-        return this.authorType.contains(AuthorType.VERIFIED);
+        this.decode();
+        return this.author.is(AuthorType.VERIFIED);
     }
 
     /**
@@ -151,7 +181,8 @@ public class ChatItem {
      * @return If this message's author is owner, returns true.
      */
     public boolean isAuthorOwner() {
-        return this.authorType.contains(AuthorType.OWNER);
+        this.decode();
+        return this.author.is(AuthorType.OWNER);
     }
 
     /**
@@ -160,7 +191,8 @@ public class ChatItem {
      * @return If this message's author is moderator, returns true.
      */
     public boolean isAuthorModerator() {
-        return this.authorType.contains(AuthorType.MODERATOR);
+        this.decode();
+        return this.author.is(AuthorType.MODERATOR);
     }
 
     /**
@@ -169,7 +201,8 @@ public class ChatItem {
      * @return If this message's author is member, returns true.
      */
     public boolean isAuthorMember() {
-        return this.authorType.contains(AuthorType.MEMBER);
+        this.decode();
+        return this.author.is(AuthorType.MEMBER);
     }
 
     /**
@@ -179,7 +212,8 @@ public class ChatItem {
      * @return Member badge icon url
      */
     public String getMemberBadgeIconURL() {
-        return this.memberBadgeIconURL;
+        this.decode();
+        return this.author.getMemberBadgeIconURL();
     }
 
     /**
@@ -188,6 +222,7 @@ public class ChatItem {
      * @return Color in int
      */
     public int getBodyBackgroundColor() {
+        this.decode();
         return this.bodyBackgroundColor;
     }
 
@@ -197,6 +232,7 @@ public class ChatItem {
      * @return Color in int
      */
     public int getBodyTextColor() {
+        this.decode();
         return this.bodyTextColor;
     }
 
@@ -206,6 +242,7 @@ public class ChatItem {
      * @return Color in int
      */
     public int getHeaderBackgroundColor() {
+        this.decode();
         return this.headerBackgroundColor;
     }
 
@@ -215,6 +252,7 @@ public class ChatItem {
      * @return Color in int
      */
     public int getHeaderTextColor() {
+        this.decode();
         return this.headerTextColor;
     }
 
@@ -224,6 +262,7 @@ public class ChatItem {
      * @return Amount of money(example ￥100)
      */
     public String getPurchaseAmount() {
+        this.decode();
         return this.purchaseAmount;
     }
 
@@ -233,6 +272,7 @@ public class ChatItem {
      * @return Color in int
      */
     public int getAuthorNameTextColor() {
+        this.decode();
         return this.authorNameTextColor;
     }
 
@@ -267,6 +307,7 @@ public class ChatItem {
      * @return Sticker icon url
      */
     public String getStickerIconURL() {
+        this.decode();
         return stickerIconURL;
     }
 
@@ -277,22 +318,20 @@ public class ChatItem {
      * @return Background color in int
      */
     public int getBackgroundColor() {
+        this.decode();
         return backgroundColor;
     }
 
     @Override
     public String toString() {
+        this.decode();
         return "ChatItem{" +
                 "type=" + type +
-                ", authorName='" + authorName + '\'' +
-                ", authorChannelID='" + authorChannelID + '\'' +
+                ", author=" + author +
                 ", message='" + message + '\'' +
                 ", messageExtended=" + messageExtended +
-                ", iconURL='" + authorIconURL + '\'' +
                 ", id='" + id + '\'' +
                 ", timestamp=" + timestamp +
-                ", authorType=" + authorType +
-                ", memberBadgeIconURL='" + memberBadgeIconURL + '\'' +
                 ", bodyBackgroundColor=" + bodyBackgroundColor +
                 ", bodyTextColor=" + bodyTextColor +
                 ", headerBackgroundColor=" + headerBackgroundColor +
@@ -0,0 +1,64 @@
+package com.github.kusaanko.youtubelivechat;
+
+/**
+ * Receives chat events while update() parses a response.
+ * Events are delivered in the order they appear in the response, on the thread calling update().
+ * All methods do nothing by default, so override only what you need.
+ */
+public interface ChatListener {
+    /**
+     * Called when a normal message or a message from YouTube is received.
+     *
+     * @param chatItem ChatItem(type=MESSAGE)
+     */
+    default void onMessage(ChatItem chatItem) {
+    }
+
+    /**
+     * Called when a Super Chat is received.
+     *
+     * @param chatItem ChatItem(type=PAID_MESSAGE)
+     */
+    default void onPaidMessage(ChatItem chatItem) {
+    }
+
+    /**
+     * Called when a Super Sticker is received.
+     *
+     * @param chatItem ChatItem(type=PAID_STICKER)
+     */
+    default void onPaidSticker(ChatItem chatItem) {
+    }
+
+    /**
+     * Called when a new member is registered.
+     *
+     * @param chatItem ChatItem(type=NEW_MEMBER_MESSAGE)
+     */
+    default void onNewMember(ChatItem chatItem) {
+    }
+
+    /**
+     * Called when an item is added to the ticker at the top of the chat.
+     *
+     * @param chatItem ChatItem(type=TICKER_PAID_MESSAGE)
+     */
+    default void onTickerPaidMessage(ChatItem chatItem) {
+    }
+
+    /**
+     * Called when a message is deleted.
+     *
+     * @param chatItemDelete ChatItemDelete
+     */
+    default void onDelete(ChatItemDelete chatItemDelete) {
+    }
+
+    /**
+     * Called when the pinned message is changed.
+     *
+     * @param chatItem New pinned message, or null if the pinned message is removed
+     */
+    default void onBannerChanged(ChatItem chatItem) {
+    }
+}
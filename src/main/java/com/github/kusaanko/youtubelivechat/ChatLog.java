@@ -0,0 +1,718 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+
+/**
+ * Append-only log of ChatItem and ChatItemDelete on disk.
+ * Records are written to memory mapped segment files in a compact binary format,
+ * and a new segment is started when the current one is full.
+ * Each segment has a sparse index of timestampUsec, so reading a time range only visits the blocks in the range.
+ * Mapped files are flushed to disk in the background, so writing is just a memory copy.
+ * <p>
+ * Add this to YouTubeLiveChat using addListener() to write every item.
+ * Items read from the log are not connected to YouTubeLiveChat, so you can't moderate them.
+ */
+public class ChatLog implements ChatListener, AutoCloseable {
+    /**
+     * Default size of a segment file in bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    /**
+     * Default interval of flushing to disk in milli seconds.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL_MS = 1000;
+
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_SUFFIX = ".idx";
+    // Number of records in an index block
+    private static final int INDEX_INTERVAL = 128;
+    private static final byte KIND_ITEM = 1;
+    private static final byte KIND_DELETE = 2;
+    private static final byte RUN_TEXT = 1;
+    private static final byte RUN_EMOJI = 2;
+
+    private static final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "ChatLog-sync");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Path directory;
+    private final int segmentSize;
+    private final List<Segment> segments;
+    // Sealed segments which are not flushed yet
+    private final Queue<MappedByteBuffer> toForce;
+    private final AuthorRegistry authors;
+    // Custom emojis read from this log
+    private final EmojiRegistry customEmojis;
+    private final ScheduledFuture<?> syncTask;
+    private volatile Segment active;
+    private volatile boolean isDirty;
+    private ByteBuffer encodeBuffer;
+    private boolean isClosed;
+
+    /**
+     * Open a log. If the directory has segments, new records are appended to them.
+     *
+     * @param directory Directory of segment files
+     * @throws IOException File error
+     */
+    public ChatLog(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, DEFAULT_SYNC_INTERVAL_MS);
+    }
+
+    /**
+     * Open a log. If the directory has segments, new records are appended to them.
+     *
+     * @param directory      Directory of segment files
+     * @param segmentSize    Size of a segment file in bytes
+     * @param syncIntervalMs Interval of flushing to disk in milli seconds
+     * @throws IOException File error
+     */
+    public ChatLog(Path directory, int segmentSize, long syncIntervalMs) throws IOException {
+        if (segmentSize < 65536) {
+            throw new IllegalArgumentException("segmentSize must be 65536 or more!");
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.segments = new CopyOnWriteArrayList<>();
+        this.toForce = new ConcurrentLinkedQueue<>();
+        this.encodeBuffer = ByteBuffer.allocate(4096);
+        this.authors = AuthorRegistry.getShared();
+        this.customEmojis = new EmojiRegistry(EmojiRegistry.DEFAULT_CAPACITY);
+        Files.createDirectories(directory);
+        this.open();
+        this.syncTask = syncer.scheduleWithFixedDelay(this::sync, syncIntervalMs, syncIntervalMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    private void open() throws IOException {
+        List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(this.directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException ignore) {
+                }
+            }
+        }
+        ids.sort(null);
+        for (int i = 0; i < ids.size(); i++) {
+            Segment segment = new Segment(ids.get(i));
+            if (i < ids.size() - 1) {
+                if (!segment.loadIndex()) {
+                    segment.scan(segment.mapReadOnly());
+                    segment.writeIndex();
+                }
+            } else {
+                // The index of the last segment may be older than the segment
+                Files.deleteIfExists(segment.indexPath());
+                segment.mapReadWrite(Math.max(this.segmentSize, (int) Files.size(segment.path())));
+                segment.scan(segment.buffer);
+                this.active = segment;
+            }
+            this.segments.add(segment);
+        }
+        if (this.active == null) {
+            this.active = new Segment(0);
+            this.active.mapReadWrite(this.segmentSize);
+            this.segments.add(this.active);
+        }
+    }
+
+    @Override
+    public void onMessage(ChatItem chatItem) {
+        this.append(chatItem);
+    }
+
+    @Override
+    public void onPaidMessage(ChatItem chatItem) {
+        this.append(chatItem);
+    }
+
+    @Override
+    public void onPaidSticker(ChatItem chatItem) {
+        this.append(chatItem);
+    }
+
+    @Override
+    public void onNewMember(ChatItem chatItem) {
+        this.append(chatItem);
+    }
+
+    @Override
+    public void onTickerPaidMessage(ChatItem chatItem) {
+        this.append(chatItem);
+    }
+
+    @Override
+    public void onDelete(ChatItemDelete chatItemDelete) {
+        this.append(chatItemDelete);
+    }
+
+    /**
+     * Write a ChatItem.
+     *
+     * @param chatItem ChatItem
+     * @throws UncheckedIOException File error
+     */
+    public synchronized void append(ChatItem chatItem) {
+        this.checkClosed();
+        this.encodeBuffer.clear();
+        this.putByte(KIND_ITEM);
+        this.putLong(chatItem.timestamp);
+        this.encodeItem(chatItem);
+        this.write(chatItem.timestamp);
+    }
+
+    /**
+     * Write a ChatItemDelete. Its timestamp is the time of writing.
+     *
+     * @param chatItemDelete ChatItemDelete
+     * @throws UncheckedIOException File error
+     */
+    public synchronized void append(ChatItemDelete chatItemDelete) {
+        this.checkClosed();
+        long timestamp = System.currentTimeMillis() * 1000;
+        this.encodeBuffer.clear();
+        this.putByte(KIND_DELETE);
+        this.putLong(timestamp);
+        this.putString(chatItemDelete.targetId);
+        this.putString(chatItemDelete.message);
+        this.write(timestamp);
+    }
+
+    /**
+     * Read records in a time range.
+     * ChatItem is passed to the method for its type, and ChatItemDelete is passed to onDelete().
+     *
+     * @param fromUsec Start of the range in UNIX time (micro seconds, inclusive)
+     * @param toUsec   End of the range in UNIX time (micro seconds, exclusive)
+     * @param listener Listener which receives records
+     * @throws IOException File error
+     */
+    public void read(long fromUsec, long toUsec, ChatListener listener) throws IOException {
+        for (Segment segment : this.segments) {
+            int size;
+            int blockCount;
+            int[] blockOffsets;
+            long[] blockMin;
+            long[] blockMax;
+            ByteBuffer buffer;
+            synchronized (this) {
+                if (segment.minTimestamp >= toUsec || segment.maxTimestamp < fromUsec) {
+                    continue;
+                }
+                size = segment.size;
+                blockCount = segment.blockCount;
+                blockOffsets = Arrays.copyOf(segment.blockOffsets, blockCount);
+                blockMin = Arrays.copyOf(segment.blockMin, blockCount);
+                blockMax = Arrays.copyOf(segment.blockMax, blockCount);
+                buffer = segment.buffer != null ? segment.buffer.duplicate() : null;
+            }
+            if (buffer == null) {
+                buffer = segment.mapReadOnly();
+            }
+            for (int i = 0; i < blockCount; i++) {
+                if (blockMin[i] >= toUsec || blockMax[i] < fromUsec) {
+                    continue;
+                }
+                int end = i + 1 < blockCount ? blockOffsets[i + 1] : size;
+                for (int pos = blockOffsets[i]; pos < end; ) {
+                    int length = buffer.getInt(pos);
+                    ByteBuffer record = buffer.duplicate();
+                    record.position(pos + 4).limit(pos + 4 + length);
+                    this.decode(record.slice(), fromUsec, toUsec, listener);
+                    pos += 4 + length;
+                }
+            }
+        }
+    }
+
+    /**
+     * Flush written records to disk now.
+     */
+    public void flush() {
+        MappedByteBuffer buffer;
+        while ((buffer = this.toForce.poll()) != null) {
+            buffer.force();
+        }
+        Segment segment = this.active;
+        // Read the buffer once, because roll() may clear it at the same time
+        buffer = segment != null ? segment.buffer : null;
+        if (buffer != null) {
+            this.isDirty = false;
+            buffer.force();
+        }
+    }
+
+    /**
+     * Flush and close this.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (this.isClosed) {
+                return;
+            }
+            this.isClosed = true;
+        }
+        this.syncTask.cancel(false);
+        this.flush();
+    }
+
+    private void sync() {
+        try {
+            if (this.isDirty || !this.toForce.isEmpty()) {
+                this.flush();
+            }
+        } catch (RuntimeException exception) {
+            exception.printStackTrace();
+        }
+    }
+
+    private void checkClosed() {
+        if (this.isClosed) {
+            throw new IllegalStateException("This ChatLog is already closed!");
+        }
+    }
+
+    private void write(long timestamp) {
+        ByteBuffer body = this.encodeBuffer;
+        body.flip();
+        int length = body.remaining();
+        if (length + 4 > this.segmentSize) {
+            throw new IllegalArgumentException("Too large record: " + length + " bytes");
+        }
+        try {
+            Segment segment = this.active;
+            // Keep 4 bytes of zero after the last record as the end mark
+            if (segment.size + 4 + length + 4 > segment.capacity) {
+                segment = this.roll();
+            }
+            int pos = segment.size;
+            MappedByteBuffer buffer = segment.buffer;
+            buffer.position(pos + 4);
+            buffer.put(body);
+            // Write the length last, so a half written record is never read
+            buffer.putInt(pos, length);
+            segment.addToIndex(pos, timestamp);
+            segment.size = pos + 4 + length;
+            this.isDirty = true;
+        } catch (IOException exception) {
+            throw new UncheckedIOException(exception);
+        }
+    }
+
+    private Segment roll() throws IOException {
+        Segment sealed = this.active;
+        sealed.writeIndex();
+        this.toForce.add(sealed.buffer);
+        Segment segment = new Segment(sealed.id + 1);
+        segment.mapReadWrite(this.segmentSize);
+        this.segments.add(segment);
+        this.active = segment;
+        // Sealed segments are mapped read only when they are read first
+        sealed.buffer = null;
+        return segment;
+    }
+
+    private void encodeItem(ChatItem chatItem) {
+        chatItem.decode();
+        this.putByte((byte) chatItem.type.ordinal());
+        this.putString(chatItem.id);
+        Author author = chatItem.author;
+        this.putString(author.getName());
+        this.putString(author.getChannelID());
+        this.putString(author.getIconURL());
+        this.putString(author.getMemberBadgeIconURL());
+        this.putVarInt(author.getTypeBits());
+        this.putString(chatItem.message);
+        if (chatItem.messageExtended == null) {
+            this.putVarInt(0);
+        } else {
+            this.putVarInt(chatItem.messageExtended.size() + 1);
+            for (Object run : chatItem.messageExtended) {
+                if (run instanceof Emoji) {
+                    Emoji emoji = (Emoji) run;
+                    this.putByte(RUN_EMOJI);
+                    this.putString(emoji.emojiId);
+                    this.putStringList(emoji.shortcuts);
+                    this.putStringList(emoji.searchTerms);
+                    this.putString(emoji.iconURL);
+                    this.putByte((byte) (emoji.isCustomEmoji ? 1 : 0));
+                } else {
+                    this.putByte(RUN_TEXT);
+                    this.putString(((Text) run).getText());
+                }
+            }
+        }
+        this.putInt(chatItem.bodyBackgroundColor);
+        this.putInt(chatItem.bodyTextColor);
+        this.putInt(chatItem.headerBackgroundColor);
+        this.putInt(chatItem.headerTextColor);
+        this.putInt(chatItem.authorNameTextColor);
+        this.putString(chatItem.purchaseAmount);
+        this.putString(chatItem.stickerIconURL);
+        this.putInt(chatItem.backgroundColor);
+        this.putInt(chatItem.endBackgroundColor);
+        this.putVarInt(chatItem.durationSec);
+        this.putVarInt(chatItem.fullDurationSec);
+        this.putString(chatItem.contextMenuParams);
+    }
+
+    private void decode(ByteBuffer record, long fromUsec, long toUsec, ChatListener listener) {
+        byte kind = record.get();
+        long timestamp = record.getLong();
+        if (timestamp < fromUsec || timestamp >= toUsec) {
+            return;
+        }
+        if (kind == KIND_ITEM) {
+            ChatParser.dispatch(listener, this.decodeItem(record, timestamp));
+        } else if (kind == KIND_DELETE) {
+            ChatItemDelete chatItemDelete = new ChatItemDelete();
+            chatItemDelete.targetId = getString(record);
+            chatItemDelete.message = getString(record);
+            listener.onDelete(chatItemDelete);
+        }
+    }
+
+    private ChatItem decodeItem(ByteBuffer record, long timestamp) {
+        ChatItem chatItem = new ChatItem(null);
+        chatItem.timestamp = timestamp;
+        chatItem.type = ChatItemType.values()[record.get()];
+        chatItem.id = getString(record);
+        String authorName = getString(record);
+        String authorChannelID = getString(record);
+        String authorIconURL = getString(record);
+        String memberBadgeIconURL = getString(record);
+        chatItem.author = this.authors.resolve(authorChannelID, authorName, authorIconURL, memberBadgeIconURL,
+                getVarInt(record));
+        chatItem.message = getString(record);
+        int runs = getVarInt(record) - 1;
+        if (runs >= 0) {
+            chatItem.messageExtended = new ArrayList<>(runs);
+            for (int i = 0; i < runs; i++) {
+                if (record.get() == RUN_EMOJI) {
+                    chatItem.messageExtended.add(this.decodeEmoji(record));
+                } else {
+                    chatItem.messageExtended.add(new Text(getString(record)));
+                }
+            }
+        }
+        chatItem.bodyBackgroundColor = record.getInt();
+        chatItem.bodyTextColor = record.getInt();
+        chatItem.headerBackgroundColor = record.getInt();
+        chatItem.headerTextColor = record.getInt();
+        chatItem.authorNameTextColor = record.getInt();
+        chatItem.purchaseAmount = getString(record);
+        chatItem.stickerIconURL = getString(record);
+        chatItem.backgroundColor = record.getInt();
+        chatItem.endBackgroundColor = record.getInt();
+        chatItem.durationSec = getVarInt(record);
+        chatItem.fullDurationSec = getVarInt(record);
+        chatItem.contextMenuParams = getString(record);
+        return chatItem;
+    }
+
+    private Emoji decodeEmoji(ByteBuffer record) {
+        String emojiId = getString(record);
+        Emoji emoji = emojiId == null ? null : EmojiRegistry.getStandard().get(emojiId);
+        if (emoji == null && emojiId != null) {
+            emoji = this.customEmojis.get(emojiId);
+        }
+        if (emoji != null) {
+            skipStringList(record);
+            skipStringList(record);
+            skipString(record);
+            record.get();
+            return emoji;
+        }
+        emoji = new Emoji();
+        emoji.emojiId = emojiId;
+        emoji.shortcuts = getStringList(record);
+        emoji.searchTerms = getStringList(record);
+        emoji.iconURL = getString(record);
+        emoji.isCustomEmoji = record.get() != 0;
+        if (emoji.shortcuts == null || emoji.searchTerms == null) {
+            return emoji;
+        }
+        return emoji.isCustomEmoji ? this.customEmojis.register(emoji) : EmojiRegistry.getStandard().register(emoji);
+    }
+
+    private void ensure(int size) {
+        if (this.encodeBuffer.remaining() < size) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(this.encodeBuffer.capacity() * 2,
+                    this.encodeBuffer.position() + size));
+            this.encodeBuffer.flip();
+            buffer.put(this.encodeBuffer);
+            this.encodeBuffer = buffer;
+        }
+    }
+
+    private void putByte(byte value) {
+        this.ensure(1);
+        this.encodeBuffer.put(value);
+    }
+
+    private void putInt(int value) {
+        this.ensure(4);
+        this.encodeBuffer.putInt(value);
+    }
+
+    private void putLong(long value) {
+        this.ensure(8);
+        this.encodeBuffer.putLong(value);
+    }
+
+    private void putVarInt(int value) {
+        this.ensure(5);
+        while ((value & ~0x7F) != 0) {
+            this.encodeBuffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        this.encodeBuffer.put((byte) value);
+    }
+
+    /**
+     * Write a string as (length + 1) and UTF-8 bytes. null is written as 0.
+     */
+    private void putString(String value) {
+        if (value == null) {
+            this.putVarInt(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.putVarInt(bytes.length + 1);
+        this.ensure(bytes.length);
+        this.encodeBuffer.put(bytes);
+    }
+
+    private void putStringList(List<String> list) {
+        if (list == null) {
+            this.putVarInt(0);
+            return;
+        }
+        this.putVarInt(list.size() + 1);
+        for (String value : list) {
+            this.putString(value);
+        }
+    }
+
+    private static int getVarInt(ByteBuffer buffer) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = getVarInt(buffer) - 1;
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void skipString(ByteBuffer buffer) {
+        int length = getVarInt(buffer) - 1;
+        if (length > 0) {
+            buffer.position(buffer.position() + length);
+        }
+    }
+
+    private static void skipStringList(ByteBuffer buffer) {
+        int size = getVarInt(buffer) - 1;
+        for (int i = 0; i < size; i++) {
+            skipString(buffer);
+        }
+    }
+
+    private static List<String> getStringList(ByteBuffer buffer) {
+        int size = getVarInt(buffer) - 1;
+        if (size < 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(getString(buffer));
+        }
+        return list;
+    }
+
+    /**
+     * A segment file and its sparse index.
+     * The index has blocks of INDEX_INTERVAL records with min and max timestamp of each block.
+     */
+    private final class Segment {
+        private final long id;
+        // Read-write mapping while this is the active segment
+        private volatile MappedByteBuffer buffer;
+        private volatile MappedByteBuffer readOnlyBuffer;
+        private int capacity;
+        private int size;
+        private long minTimestamp;
+        private long maxTimestamp;
+        private int blockCount;
+        private int[] blockOffsets;
+        private long[] blockMin;
+        private long[] blockMax;
+        private int recordsInBlock;
+
+        private Segment(long id) {
+            this.id = id;
+            this.minTimestamp = Long.MAX_VALUE;
+            this.maxTimestamp = Long.MIN_VALUE;
+            this.blockOffsets = new int[16];
+            this.blockMin = new long[16];
+            this.blockMax = new long[16];
+        }
+
+        private Path path() {
+            return directory.resolve(String.format("%020d", this.id) + SEGMENT_SUFFIX);
+        }
+
+        private Path indexPath() {
+            return directory.resolve(String.format("%020d", this.id) + INDEX_SUFFIX);
+        }
+
+        private void mapReadWrite(int capacity) throws IOException {
+            try (FileChannel channel = FileChannel.open(this.path(), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+                this.capacity = capacity;
+            }
+        }
+
+        /**
+         * Map this read only. The mapping is kept, so a sealed segment is mapped only once.
+         */
+        private ByteBuffer mapReadOnly() throws IOException {
+            MappedByteBuffer readOnlyBuffer = this.readOnlyBuffer;
+            if (readOnlyBuffer == null) {
+                synchronized (this) {
+                    readOnlyBuffer = this.readOnlyBuffer;
+                    if (readOnlyBuffer == null) {
+                        try (FileChannel channel = FileChannel.open(this.path(), StandardOpenOption.READ)) {
+                            readOnlyBuffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                        }
+                        this.readOnlyBuffer = readOnlyBuffer;
+                    }
+                }
+            }
+            return readOnlyBuffer.duplicate();
+        }
+
+        private void addToIndex(int pos, long timestamp) {
+            if (this.recordsInBlock == 0) {
+                if (this.blockCount == this.blockOffsets.length) {
+                    int length = this.blockCount * 2;
+                    this.blockOffsets = Arrays.copyOf(this.blockOffsets, length);
+                    this.blockMin = Arrays.copyOf(this.blockMin, length);
+                    this.blockMax = Arrays.copyOf(this.blockMax, length);
+                }
+                this.blockOffsets[this.blockCount] = pos;
+                this.blockMin[this.blockCount] = timestamp;
+                this.blockMax[this.blockCount] = timestamp;
+                this.blockCount++;
+            } else {
+                int block = this.blockCount - 1;
+                this.blockMin[block] = Math.min(this.blockMin[block], timestamp);
+                this.blockMax[block] = Math.max(this.blockMax[block], timestamp);
+            }
+            if (++this.recordsInBlock == INDEX_INTERVAL) {
+                this.recordsInBlock = 0;
+            }
+            this.minTimestamp = Math.min(this.minTimestamp, timestamp);
+            this.maxTimestamp = Math.max(this.maxTimestamp, timestamp);
+        }
+
+        /**
+         * Build the index by reading all records, and find the end.
+         */
+        private void scan(ByteBuffer buffer) {
+            int pos = 0;
+            int limit = buffer.capacity();
+            while (pos + 4 + 9 <= limit) {
+                int length = buffer.getInt(pos);
+                if (length < 9 || pos + 4 + length > limit) {
+                    break;
+                }
+                this.addToIndex(pos, buffer.getLong(pos + 5));
+                pos += 4 + length;
+            }
+            this.size = pos;
+        }
+
+        private void writeIndex() throws IOException {
+            ByteBuffer index = ByteBuffer.allocate(12 + 20 * this.blockCount);
+            index.putInt(this.size);
+            index.putInt(this.recordsInBlock);
+            index.putInt(this.blockCount);
+            for (int i = 0; i < this.blockCount; i++) {
+                index.putInt(this.blockOffsets[i]);
+                index.putLong(this.blockMin[i]);
+                index.putLong(this.blockMax[i]);
+            }
+            index.flip();
+            try (FileChannel channel = FileChannel.open(this.indexPath(), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (index.hasRemaining()) {
+                    channel.write(index);
+                }
+                channel.force(true);
+            }
+        }
+
+        private boolean loadIndex() throws IOException {
+            Path path = this.indexPath();
+            if (!Files.exists(path)) {
+                return false;
+            }
+            ByteBuffer index = ByteBuffer.wrap(Files.readAllBytes(path));
+            if (index.remaining() < 12) {
+                return false;
+            }
+            this.size = index.getInt();
+            this.recordsInBlock = index.getInt();
+            int blockCount = index.getInt();
+            if (index.remaining() != 20 * blockCount) {
+                return false;
+            }
+            this.blockCount = blockCount;
+            this.blockOffsets = new int[Math.max(16, blockCount)];
+            this.blockMin = new long[this.blockOffsets.length];
+            this.blockMax = new long[this.blockOffsets.length];
+            for (int i = 0; i < blockCount; i++) {
+                this.blockOffsets[i] = index.getInt();
+                this.blockMin[i] = index.getLong();
+                this.blockMax[i] = index.getLong();
+                this.minTimestamp = Math.min(this.minTimestamp, this.blockMin[i]);
+                this.maxTimestamp = Math.max(this.maxTimestamp, this.blockMax[i]);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,494 @@
+package com.github.kusaanko.youtubelivechat;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.MalformedJsonException;
+
+import javax.management.JMException;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import java.io.InterruptedIOException;
+import java.lang.management.ManagementFactory;
+import java.net.http.HttpTimeoutException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and histograms of YouTubeLiveChat exposed as an MXBean.
+ * All YouTubeLiveChat report to getGlobal() by default, which is registered as
+ * {@code com.github.kusaanko.youtubelivechat:type=ChatMetrics,name=global}.
+ * To see a session alone, set a new ChatMetrics using YouTubeLiveChat#setMetrics() and call register().
+ * Values recorded to a ChatMetrics are also recorded to its parent.
+ * <p>
+ * Recording is lock-free using striped adders, so many YouTubeLiveChat can share one ChatMetrics.
+ */
+public class ChatMetrics implements ChatMetricsMXBean {
+    /**
+     * Domain of ObjectName of ChatMetrics.
+     */
+    public static final String DOMAIN = "com.github.kusaanko.youtubelivechat";
+
+    private static final ChatMetrics global = new ChatMetrics("global", null);
+
+    static {
+        try {
+            global.register();
+        } catch (IllegalStateException | SecurityException ignored) {
+            // JMX is not available, but the metrics can still be read from getGlobal()
+        }
+    }
+
+    /**
+     * HTTP endpoints used by YouTubeLiveChat.
+     */
+    public enum Endpoint {
+        LIVE_CHAT,
+        REPLAY,
+        SEND_MESSAGE,
+        MODERATE,
+        CONTEXT_MENU,
+        WATCH_PAGE,
+        LIVE_CHAT_PAGE,
+        BROADCAST_INFO
+    }
+
+    /**
+     * Causes of errors.
+     */
+    public enum ErrorCause {
+        /**
+         * The response code is not 200.
+         */
+        HTTP_STATUS,
+        /**
+         * The request timed out.
+         */
+        TIMEOUT,
+        /**
+         * Connection error.
+         */
+        NETWORK,
+        /**
+         * The response is not the expected json.
+         */
+        PARSE
+    }
+
+    private final String name;
+    private final ChatMetrics parent;
+    private final LongAdder updates;
+    private final LongAdder[] items;
+    private final ItemRate itemRate;
+    private final Histogram itemsPerUpdate;
+    private final LongAdder deletes;
+    private final LongAdder resets;
+    private final LongAdder continuationLosses;
+    private final LongAdder finishedReplays;
+    private final LongAdder[] errors;
+    // In micro seconds
+    private final Histogram[] requestLatency;
+    private final LongAdder[] responseBytes;
+    // In micro seconds
+    private final Histogram parseTime;
+    private ObjectName objectName;
+
+    /**
+     * Initialize ChatMetrics which reports to getGlobal() too.
+     *
+     * @param name Name used in ObjectName
+     */
+    public ChatMetrics(String name) {
+        this(name, global);
+    }
+
+    /**
+     * Initialize ChatMetrics
+     *
+     * @param name   Name used in ObjectName
+     * @param parent ChatMetrics which receives the same values, or null
+     */
+    public ChatMetrics(String name, ChatMetrics parent) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("name must not be empty!");
+        }
+        this.name = name;
+        this.parent = parent;
+        this.updates = new LongAdder();
+        this.items = newAdders(ChatItemType.values().length);
+        this.itemRate = new ItemRate();
+        this.itemsPerUpdate = new Histogram();
+        this.deletes = new LongAdder();
+        this.resets = new LongAdder();
+        this.continuationLosses = new LongAdder();
+        this.finishedReplays = new LongAdder();
+        this.errors = newAdders(ErrorCause.values().length);
+        this.requestLatency = new Histogram[Endpoint.values().length];
+        for (int i = 0; i < this.requestLatency.length; i++) {
+            this.requestLatency[i] = new Histogram();
+        }
+        this.responseBytes = newAdders(Endpoint.values().length);
+        this.parseTime = new Histogram();
+    }
+
+    private static LongAdder[] newAdders(int length) {
+        LongAdder[] adders = new LongAdder[length];
+        for (int i = 0; i < length; i++) {
+            adders[i] = new LongAdder();
+        }
+        return adders;
+    }
+
+    /**
+     * Get ChatMetrics which all YouTubeLiveChat report to by default.
+     *
+     * @return Global ChatMetrics
+     */
+    public static ChatMetrics getGlobal() {
+        return global;
+    }
+
+    /**
+     * Register this to the platform MBeanServer.
+     *
+     * @return this
+     * @throws IllegalStateException Couldn't register (For example, the name is already used)
+     */
+    public synchronized ChatMetrics register() {
+        if (this.objectName != null) {
+            return this;
+        }
+        try {
+            ObjectName objectName = new ObjectName(DOMAIN + ":type=ChatMetrics,name=" + ObjectName.quote(this.name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            this.objectName = objectName;
+        } catch (JMException exception) {
+            throw new IllegalStateException("Couldn't register ChatMetrics " + this.name + "!", exception);
+        }
+        return this;
+    }
+
+    /**
+     * Unregister this from the platform MBeanServer.
+     */
+    public synchronized void unregister() {
+        if (this.objectName == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+        } catch (JMException ignored) {
+            // Already unregistered
+        }
+        this.objectName = null;
+    }
+
+    /**
+     * Get ObjectName of this.
+     *
+     * @return ObjectName, or null if this is not registered
+     */
+    public synchronized ObjectName getObjectName() {
+        return this.objectName;
+    }
+
+    /**
+     * Get the parent.
+     *
+     * @return Parent, or null
+     */
+    public ChatMetrics getParent() {
+        return this.parent;
+    }
+
+    void recordRequest(Endpoint endpoint, long nanos) {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.requestLatency[endpoint.ordinal()].record(nanos / 1000);
+        }
+    }
+
+    void recordResponseBytes(Endpoint endpoint, long bytes) {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.responseBytes[endpoint.ordinal()].add(bytes);
+        }
+    }
+
+    void recordError(ErrorCause cause) {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.errors[cause.ordinal()].increment();
+        }
+    }
+
+    void recordParse(long nanos) {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.parseTime.record(nanos / 1000);
+        }
+    }
+
+    void recordUpdate(int itemCount) {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.updates.increment();
+            metrics.itemsPerUpdate.record(itemCount);
+        }
+    }
+
+    void recordItem(ChatItemType type) {
+        long now = System.currentTimeMillis();
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.items[type.ordinal()].increment();
+            metrics.itemRate.increment(now);
+        }
+    }
+
+    void recordDelete() {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.deletes.increment();
+        }
+    }
+
+    void recordReset() {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.resets.increment();
+        }
+    }
+
+    void recordContinuationLoss() {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.continuationLosses.increment();
+        }
+    }
+
+    void recordFinishedReplay() {
+        for (ChatMetrics metrics = this; metrics != null; metrics = metrics.parent) {
+            metrics.finishedReplays.increment();
+        }
+    }
+
+    /**
+     * Decide the cause of an exception thrown by a request or a parser.
+     */
+    static ErrorCause causeOf(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpTimeoutException) {
+                return ErrorCause.TIMEOUT;
+            }
+            if (cause instanceof MalformedJsonException || cause instanceof JsonParseException
+                    || cause instanceof IllegalStateException || cause instanceof NumberFormatException) {
+                return ErrorCause.PARSE;
+            }
+            if (cause instanceof InterruptedIOException) {
+                return ErrorCause.NETWORK;
+            }
+        }
+        return ErrorCause.NETWORK;
+    }
+
+    @Override
+    public String getName() {
+        return this.name;
+    }
+
+    @Override
+    public long getUpdates() {
+        return this.updates.sum();
+    }
+
+    @Override
+    public long getItems() {
+        long sum = 0;
+        for (LongAdder count : this.items) {
+            sum += count.sum();
+        }
+        return sum;
+    }
+
+    @Override
+    public Map<String, Long> getItemsByType() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (ChatItemType type : ChatItemType.values()) {
+            map.put(type.name(), this.items[type.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public double getItemsPerSecond() {
+        return this.itemRate.getPerSecond(System.currentTimeMillis());
+    }
+
+    @Override
+    public Stats getItemsPerUpdate() {
+        return new Stats(this.itemsPerUpdate, 1);
+    }
+
+    @Override
+    public long getDeletes() {
+        return this.deletes.sum();
+    }
+
+    @Override
+    public long getResets() {
+        return this.resets.sum();
+    }
+
+    @Override
+    public long getContinuationLosses() {
+        return this.continuationLosses.sum();
+    }
+
+    @Override
+    public long getFinishedReplays() {
+        return this.finishedReplays.sum();
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (ErrorCause cause : ErrorCause.values()) {
+            map.put(cause.name(), this.errors[cause.ordinal()].sum());
+        }
+        return map;
+    }
+
+    /**
+     * Get number of errors.
+     *
+     * @param cause Cause
+     * @return Number of errors
+     */
+    public long getErrors(ErrorCause cause) {
+        return this.errors[cause.ordinal()].sum();
+    }
+
+    @Override
+    public Map<String, Stats> getRequestLatencyMs() {
+        Map<String, Stats> map = new LinkedHashMap<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            map.put(endpoint.name(), this.getRequestLatencyMs(endpoint));
+        }
+        return map;
+    }
+
+    /**
+     * Get statistics of time until the response header arrives.
+     *
+     * @param endpoint Endpoint
+     * @return Stats in milli seconds
+     */
+    public Stats getRequestLatencyMs(Endpoint endpoint) {
+        return new Stats(this.requestLatency[endpoint.ordinal()], 0.001);
+    }
+
+    @Override
+    public Map<String, Long> getResponseBytes() {
+        Map<String, Long> map = new LinkedHashMap<>();
+        for (Endpoint endpoint : Endpoint.values()) {
+            map.put(endpoint.name(), this.responseBytes[endpoint.ordinal()].sum());
+        }
+        return map;
+    }
+
+    @Override
+    public Stats getParseTimeMs() {
+        return new Stats(this.parseTime, 0.001);
+    }
+
+    /**
+     * Snapshot of a histogram.
+     */
+    public static final class Stats {
+        private final long count;
+        private final double mean;
+        private final double max;
+        private final double p50;
+        private final double p90;
+        private final double p99;
+
+        private Stats(Histogram histogram, double scale) {
+            this.count = histogram.getCount();
+            this.mean = this.count == 0 ? 0 : histogram.getSum() * scale / this.count;
+            this.max = histogram.getMax() * scale;
+            this.p50 = histogram.getValueAt(0.5) * scale;
+            this.p90 = histogram.getValueAt(0.9) * scale;
+            this.p99 = histogram.getValueAt(0.99) * scale;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        public double getMean() {
+            return this.mean;
+        }
+
+        public double getMax() {
+            return this.max;
+        }
+
+        public double getP50() {
+            return this.p50;
+        }
+
+        public double getP90() {
+            return this.p90;
+        }
+
+        public double getP99() {
+            return this.p99;
+        }
+
+        @Override
+        public String toString() {
+            return "Stats{" +
+                    "count=" + count +
+                    ", mean=" + mean +
+                    ", max=" + max +
+                    ", p50=" + p50 +
+                    ", p90=" + p90 +
+                    ", p99=" + p99 +
+                    '}';
+        }
+    }
+
+    /**
+     * Counts of items in the recent seconds.
+     * A slot is cleared when it is reused for a new second. Items counted while clearing may be lost.
+     */
+    private static final class ItemRate {
+        private static final int SLOTS = 64;
+        private static final int WINDOW_SECONDS = 60;
+
+        private final AtomicLongArray seconds;
+        private final LongAdder[] counts;
+
+        private ItemRate() {
+            this.seconds = new AtomicLongArray(SLOTS);
+            this.counts = newAdders(SLOTS);
+        }
+
+        private void increment(long nowMillis) {
+            long second = nowMillis / 1000;
+            int slot = (int) (second % SLOTS);
+            long slotSecond = this.seconds.get(slot);
+            if (slotSecond != second && this.seconds.compareAndSet(slot, slotSecond, second)) {
+                this.counts[slot].reset();
+            }
+            this.counts[slot].increment();
+        }
+
+        /**
+         * Average of the last complete WINDOW_SECONDS seconds.
+         */
+        private double getPerSecond(long nowMillis) {
+            long second = nowMillis / 1000;
+            long sum = 0;
+            for (long s = second - WINDOW_SECONDS; s < second; s++) {
+                int slot = (int) (s % SLOTS);
+                if (this.seconds.get(slot) == s) {
+                    sum += this.counts[slot].sum();
+                }
+            }
+            return (double) sum / WINDOW_SECONDS;
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.Map;
+
+/**
+ * Management interface of ChatMetrics.
+ * Times are in milli seconds and sizes are in bytes.
+ */
+public interface ChatMetricsMXBean {
+    /**
+     * @return Name of the metrics
+     */
+    String getName();
+
+    /**
+     * @return Number of successful update()
+     */
+    long getUpdates();
+
+    /**
+     * @return Number of new items (duplicated items are not counted)
+     */
+    long getItems();
+
+    /**
+     * @return Number of new items by ChatItemType
+     */
+    Map<String, Long> getItemsByType();
+
+    /**
+     * @return New items per second in the last minute
+     */
+    double getItemsPerSecond();
+
+    /**
+     * @return Statistics of items in a response of get_live_chat or get_live_chat_replay
+     */
+    ChatMetrics.Stats getItemsPerUpdate();
+
+    /**
+     * @return Number of deleted items
+     */
+    long getDeletes();
+
+    /**
+     * @return Number of reset()
+     */
+    long getResets();
+
+    /**
+     * @return Number of times continuation of a live became null (the live ended or was lost)
+     */
+    long getContinuationLosses();
+
+    /**
+     * @return Number of replays whose chat was read to the end
+     */
+    long getFinishedReplays();
+
+    /**
+     * @return Number of errors by ChatMetrics.ErrorCause
+     */
+    Map<String, Long> getErrors();
+
+    /**
+     * @return Statistics of time until the response header arrives by ChatMetrics.Endpoint
+     */
+    Map<String, ChatMetrics.Stats> getRequestLatencyMs();
+
+    /**
+     * @return Received bytes of response bodies (before decompression) by ChatMetrics.Endpoint
+     */
+    Map<String, Long> getResponseBytes();
+
+    /**
+     * @return Statistics of time to parse a response of get_live_chat or get_live_chat_replay, including reading the body
+     */
+    ChatMetrics.Stats getParseTimeMs();
+}
@@ -0,0 +1,1283 @@
+package com.github.kusaanko.youtubelivechat;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streaming parser for get_live_chat and get_live_chat_replay responses.
+ * This reads the response token by token, builds ChatItem and ChatItemDelete directly
+ * and passes each of them to the listener as soon as it is read,
+ * skipping every subtree which YouTubeLiveChat doesn't use.
+ */
+final class ChatParser {
+    // Fields of a renderer decoded later in lazy decoding mode
+    private static final String[] DEFERRED_FIELDS = {
+            "authorName", "authorPhoto", "authorBadges", "contextMenuEndpoint", "bodyBackgroundColor",
+            "bodyTextColor", "headerBackgroundColor", "headerTextColor", "authorNameTextColor", "backgroundColor",
+            "purchaseAmountText", "sticker"
+    };
+    // Renderers decoded lazily
+    private static final String[] LAZY_RENDERERS = {
+            "liveChatTextMessageRenderer", "liveChatPaidMessageRenderer", "liveChatPaidStickerRenderer",
+            "liveChatMembershipItemRenderer"
+    };
+    // Field which SourceReader adds to a lazy renderer. The value is the position of the renderer in the response.
+    private static final String LAZY_START = "@lazyStart";
+
+    private final YouTubeLiveChat liveChat;
+    private final ChatListener listener;
+    private final AuthorRegistry authors;
+    private final EmojiRegistry customEmojis;
+    private final boolean isLazy;
+    // Response being parsed in lazy decoding mode
+    private String source;
+    // Decoding the fields skipped in lazy decoding mode. Other fields are skipped.
+    private boolean isDecodingDeferred;
+    // Author of the item being read. Resolved through the registry when the item is finished.
+    private String authorName;
+    private String authorChannelID;
+    private String authorIconURL;
+    private String memberBadgeIconURL;
+    private int authorTypes;
+
+    String visitorData;
+    String clientVersion;
+    String continuation;
+    // Hint from YouTube when the next request is useful. -1 if not sent.
+    long timeoutMs = -1;
+    boolean hasContinuations;
+    // False if the response has no liveChatContinuation (for example an error response)
+    boolean hasLiveChatContinuation;
+    int itemCount;
+    // Max videoOffsetTimeMsec of replay actions. -1 if not sent.
+    long videoOffsetMs = -1;
+
+    ChatParser(YouTubeLiveChat liveChat, ChatListener listener) {
+        this(liveChat, listener, liveChat != null && liveChat.isLazyDecoding());
+    }
+
+    ChatParser(YouTubeLiveChat liveChat, ChatListener listener, boolean isLazy) {
+        this.liveChat = liveChat;
+        this.listener = listener;
+        this.authors = liveChat != null ? liveChat.getAuthorRegistry() : AuthorRegistry.getShared();
+        this.customEmojis = liveChat != null ? liveChat.getCustomEmojiRegistry() : null;
+        this.isLazy = isLazy;
+    }
+
+    /**
+     * Parse a response.
+     *
+     * @param json Response body
+     * @throws IOException Malformed json
+     */
+    void parse(String json) throws IOException {
+        if (this.isLazy) {
+            this.source = json;
+            this.read(new SourceReader(json, 0, true));
+        } else {
+            this.read(new StringReader(json));
+        }
+    }
+
+    /**
+     * Parse a response. In lazy decoding mode, the whole response is read into a String first
+     * because undecoded items keep it.
+     *
+     * @param in Response body
+     * @throws IOException Malformed json
+     */
+    void parse(Reader in) throws IOException {
+        if (!this.isLazy) {
+            this.read(in);
+            return;
+        }
+        StringBuilder json = new StringBuilder(65536);
+        try (Reader reader = in) {
+            char[] buff = new char[8192];
+            int len;
+            while ((len = reader.read(buff)) != -1) {
+                json.append(buff, 0, len);
+            }
+        }
+        this.parse(json.toString());
+    }
+
+    private void read(Reader in) throws IOException {
+        try (JsonReader reader = new JsonReader(in)) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                throw new IOException("This is not json(map)!");
+            }
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "responseContext":
+                        this.readResponseContext(reader);
+                        break;
+                    case "continuationContents":
+                        if (beginObject(reader)) {
+                            while (reader.hasNext()) {
+                                if (reader.nextName().equals("liveChatContinuation")) {
+                                    this.hasLiveChatContinuation = true;
+                                    this.readLiveChatContinuation(reader);
+                                } else {
+                                    reader.skipValue();
+                                }
+                            }
+                            reader.endObject();
+                        }
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (IllegalStateException | NumberFormatException exception) {
+            throw new IOException("Malformed live chat response", exception);
+        }
+    }
+
+    private void readResponseContext(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "visitorData":
+                    this.visitorData = nextString(reader);
+                    break;
+                case "serviceTrackingParams":
+                    if (beginArray(reader)) {
+                        while (reader.hasNext()) {
+                            this.readServiceTrackingParam(reader);
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readServiceTrackingParam(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        String service = null;
+        String cver = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "service":
+                    service = nextString(reader);
+                    break;
+                case "params":
+                    if (beginArray(reader)) {
+                        while (reader.hasNext()) {
+                            String value = readKeyValue(reader, "cver");
+                            if (value != null) {
+                                cver = value;
+                            }
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if ("CSI".equals(service) && cver != null) {
+            this.clientVersion = cver;
+        }
+    }
+
+    private void readLiveChatContinuation(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "actions":
+                    this.readActions(reader);
+                    break;
+                case "continuations":
+                    if (beginArray(reader)) {
+                        this.hasContinuations = true;
+                        while (reader.hasNext()) {
+                            this.readContinuation(reader);
+                        }
+                        reader.endArray();
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readContinuation(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        String value = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "invalidationContinuationData":
+                case "timedContinuationData":
+                case "reloadContinuationData":
+                case "liveChatReplayContinuationData":
+                    String continuation = this.readContinuationData(reader);
+                    if (value == null) {
+                        value = continuation;
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (value != null) {
+            this.continuation = value;
+        }
+    }
+
+    private String readContinuationData(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        String continuation = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "continuation":
+                    continuation = nextString(reader);
+                    break;
+                case "timeoutMs":
+                    this.timeoutMs = nextLong(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return continuation;
+    }
+
+    private void readActions(JsonReader reader) throws IOException {
+        if (!beginArray(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            this.readAction(reader);
+        }
+        reader.endArray();
+    }
+
+    private void readAction(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "addChatItemAction": {
+                    ChatItem chatItem = this.readItemHolder(reader);
+                    if (chatItem != null && chatItem.id != null) {
+                        this.emit(chatItem);
+                    }
+                    break;
+                }
+                // For replay
+                case "replayChatItemAction":
+                    if (beginObject(reader)) {
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "actions":
+                                    this.readActions(reader);
+                                    break;
+                                case "videoOffsetTimeMsec":
+                                    this.videoOffsetMs = Math.max(this.videoOffsetMs, nextLong(reader));
+                                    break;
+                                default:
+                                    reader.skipValue();
+                                    break;
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "addLiveChatTickerItemAction": {
+                    ChatItem chatItem = this.readItemHolder(reader);
+                    if (chatItem != null && chatItem.id != null) {
+                        this.listener.onTickerPaidMessage(chatItem);
+                    }
+                    break;
+                }
+                // Pinned message
+                case "addBannerToLiveChatCommand": {
+                    ChatItem chatItem = this.readBanner(reader);
+                    if (chatItem != null) {
+                        this.listener.onBannerChanged(chatItem);
+                    }
+                    break;
+                }
+                case "removeBannerForLiveChatCommand":
+                    reader.skipValue();
+                    this.listener.onBannerChanged(null);
+                    break;
+                case "markChatItemAsDeletedAction":
+                    this.readDelete(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read an object which has "item" key like addChatItemAction.
+     */
+    private ChatItem readItemHolder(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        ChatItem chatItem = null;
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("item")) {
+                chatItem = this.readItem(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return chatItem;
+    }
+
+    private ChatItem readBanner(JsonReader reader) throws IOException {
+        ChatItem chatItem = null;
+        if (!beginObject(reader)) {
+            return null;
+        }
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("bannerRenderer") && beginObject(reader)) {
+                while (reader.hasNext()) {
+                    if (reader.nextName().equals("liveChatBannerRenderer") && beginObject(reader)) {
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("contents")) {
+                                chatItem = this.readItem(reader);
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    } else {
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return chatItem;
+    }
+
+    private void readDelete(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        ChatItemDelete chatItemDelete = new ChatItemDelete();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "deletedStateMessage":
+                    chatItemDelete.message = this.readMessage(reader, new ArrayList<>());
+                    break;
+                case "targetItemId":
+                    chatItemDelete.targetId = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        this.listener.onDelete(chatItemDelete);
+    }
+
+    private void emit(ChatItem chatItem) {
+        this.itemCount++;
+        dispatch(this.listener, chatItem);
+    }
+
+    /**
+     * Pass a ChatItem to the method of the listener for its type.
+     */
+    static void dispatch(ChatListener listener, ChatItem chatItem) {
+        switch (chatItem.type) {
+            case PAID_MESSAGE:
+                listener.onPaidMessage(chatItem);
+                break;
+            case PAID_STICKER:
+                listener.onPaidSticker(chatItem);
+                break;
+            case NEW_MEMBER_MESSAGE:
+                listener.onNewMember(chatItem);
+                break;
+            case TICKER_PAID_MESSAGE:
+                listener.onTickerPaidMessage(chatItem);
+                break;
+            default:
+                listener.onMessage(chatItem);
+                break;
+        }
+    }
+
+    /**
+     * Read an object which contains one renderer like liveChatTextMessageRenderer.
+     */
+    private ChatItem readItem(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        ChatItem chatItem = new ChatItem(this.liveChat);
+        this.authorName = null;
+        this.authorChannelID = null;
+        this.authorIconURL = null;
+        this.memberBadgeIconURL = null;
+        this.authorTypes = 0;
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            switch (name) {
+                case "liveChatTextMessageRenderer":
+                    this.readRenderer(reader, chatItem);
+                    break;
+                case "liveChatPaidMessageRenderer":
+                    chatItem.type = ChatItemType.PAID_MESSAGE;
+                    this.readRenderer(reader, chatItem);
+                    break;
+                case "liveChatPaidStickerRenderer":
+                    chatItem.type = ChatItemType.PAID_STICKER;
+                    this.readRenderer(reader, chatItem);
+                    break;
+                case "liveChatMembershipItemRenderer":
+                    chatItem.type = ChatItemType.NEW_MEMBER_MESSAGE;
+                    this.readRenderer(reader, chatItem);
+                    break;
+                case "liveChatViewerEngagementMessageRenderer":
+                    this.authorName = "YouTube";
+                    this.authorChannelID = "user/YouTube";
+                    this.authorTypes |= Author.typeBit(AuthorType.YOUTUBE);
+                    this.readRenderer(reader, chatItem);
+                    break;
+                case "liveChatTickerPaidMessageItemRenderer":
+                    this.readTickerRenderer(reader, chatItem);
+                    chatItem.type = ChatItemType.TICKER_PAID_MESSAGE;
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (chatItem.lazyJson != null) {
+            // Only the channel id is known until the item is decoded
+            chatItem.author = new Author(this.authorChannelID, null, null, null, 0);
+        } else {
+            chatItem.author = this.authors.resolve(this.authorChannelID, this.authorName, this.authorIconURL,
+                    this.memberBadgeIconURL, this.authorTypes);
+        }
+        return chatItem;
+    }
+
+    /**
+     * Decode fields which were skipped by lazy decoding mode.
+     *
+     * @param chatItem ChatItem
+     * @param json     Response
+     * @param start    Position of the renderer in the response
+     */
+    static void decodeLazily(ChatItem chatItem, String json, int start) {
+        ChatParser parser = new ChatParser(chatItem.liveChat, null, false);
+        parser.authorChannelID = chatItem.author.getChannelID();
+        parser.isDecodingDeferred = true;
+        try (JsonReader reader = new JsonReader(new SourceReader(json, start, false))) {
+            parser.readRenderer(reader, chatItem);
+        } catch (IOException exception) {
+            // The renderer was already read from valid json
+            throw new UncheckedIOException(exception);
+        }
+        chatItem.author = parser.authors.resolve(parser.authorChannelID, parser.authorName, parser.authorIconURL,
+                parser.memberBadgeIconURL, parser.authorTypes);
+    }
+
+    /**
+     * Read the renderer of a message, a paid message, a paid sticker or a new member.
+     * In lazy decoding mode, SourceReader adds LAZY_START to the renderer and gives the values of DEFERRED_FIELDS
+     * as 0, so they are not even tokenized. The ChatItem keeps the response and the position of the renderer
+     * to decode them when one of them is used.
+     */
+    private void readRenderer(JsonReader reader, ChatItem chatItem) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        boolean isMembership = chatItem.type == ChatItemType.NEW_MEMBER_MESSAGE;
+        boolean isSkippingDeferred = false;
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            if ((isSkippingDeferred || this.isDecodingDeferred) && isDeferred(name) != this.isDecodingDeferred) {
+                reader.skipValue();
+                continue;
+            }
+            if (name.equals(LAZY_START) && this.source != null) {
+                chatItem.lazyStart = nextInt(reader);
+                chatItem.lazyJson = this.source;
+                isSkippingDeferred = true;
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    chatItem.id = nextString(reader);
+                    break;
+                case "authorName":
+                    this.authorName = readSimpleText(reader);
+                    break;
+                case "authorExternalChannelId":
+                    this.authorChannelID = nextString(reader);
+                    break;
+                case "message":
+                    if (isMembership && chatItem.messageExtended != null) {
+                        reader.skipValue();
+                    } else {
+                        chatItem.messageExtended = new ArrayList<>();
+                        chatItem.message = this.readMessage(reader, chatItem.messageExtended);
+                    }
+                    break;
+                case "headerSubtext":
+                    if (isMembership) {
+                        chatItem.messageExtended = new ArrayList<>();
+                        chatItem.message = this.readMessage(reader, chatItem.messageExtended);
+                    } else {
+                        reader.skipValue();
+                    }
+                    break;
+                case "authorPhoto":
+                    this.authorIconURL = readThumbnailURL(reader);
+                    break;
+                case "timestampUsec":
+                    chatItem.timestamp = nextLong(reader);
+                    break;
+                case "authorBadges":
+                    this.readAuthorBadges(reader);
+                    break;
+                case "contextMenuEndpoint":
+                    String contextMenuParams = readContextMenuParams(reader);
+                    if (contextMenuParams != null) {
+                        chatItem.contextMenuParams = contextMenuParams;
+                    }
+                    break;
+                case "bodyBackgroundColor":
+                    chatItem.bodyBackgroundColor = nextInt(reader);
+                    break;
+                case "bodyTextColor":
+                    chatItem.bodyTextColor = nextInt(reader);
+                    break;
+                case "headerBackgroundColor":
+                    chatItem.headerBackgroundColor = nextInt(reader);
+                    break;
+                case "headerTextColor":
+                    chatItem.headerTextColor = nextInt(reader);
+                    break;
+                case "authorNameTextColor":
+                    chatItem.authorNameTextColor = nextInt(reader);
+                    break;
+                case "backgroundColor":
+                    chatItem.backgroundColor = nextInt(reader);
+                    break;
+                case "purchaseAmountText":
+                    chatItem.purchaseAmount = readSimpleText(reader);
+                    break;
+                case "sticker":
+                    chatItem.stickerIconURL = readThumbnailURL(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Check if the field of a renderer is decoded later in lazy decoding mode.
+     */
+    private static boolean isDeferred(String name) {
+        for (String field : DEFERRED_FIELDS) {
+            if (field.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void readTickerRenderer(JsonReader reader, ChatItem chatItem) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "showItemEndpoint":
+                    if (beginObject(reader)) {
+                        while (reader.hasNext()) {
+                            if (reader.nextName().equals("showLiveChatItemEndpoint") && beginObject(reader)) {
+                                while (reader.hasNext()) {
+                                    if (reader.nextName().equals("renderer")) {
+                                        this.readTickerItem(reader, chatItem);
+                                    } else {
+                                        reader.skipValue();
+                                    }
+                                }
+                                reader.endObject();
+                            } else {
+                                reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
+                    }
+                    break;
+                case "endBackgroundColor":
+                    chatItem.endBackgroundColor = nextInt(reader);
+                    break;
+                case "durationSec":
+                    chatItem.durationSec = nextInt(reader);
+                    break;
+                case "fullDurationSec":
+                    chatItem.fullDurationSec = nextInt(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read the renderer shown when the ticker is clicked into the ticker's ChatItem.
+     */
+    private void readTickerItem(JsonReader reader, ChatItem chatItem) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "liveChatPaidMessageRenderer":
+                case "liveChatPaidStickerRenderer":
+                case "liveChatMembershipItemRenderer":
+                case "liveChatTextMessageRenderer":
+                    this.readRenderer(reader, chatItem);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    private void readAuthorBadges(JsonReader reader) throws IOException {
+        if (!beginArray(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            if (!beginObject(reader)) {
+                continue;
+            }
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("liveChatAuthorBadgeRenderer") && beginObject(reader)) {
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "icon":
+                                String type = readKeyedString(reader, "iconType");
+                                if (type != null) {
+                                    switch (type) {
+                                        case "VERIFIED":
+                                            this.authorTypes |= Author.typeBit(AuthorType.VERIFIED);
+                                            break;
+                                        case "OWNER":
+                                            this.authorTypes |= Author.typeBit(AuthorType.OWNER);
+                                            break;
+                                        case "MODERATOR":
+                                            this.authorTypes |= Author.typeBit(AuthorType.MODERATOR);
+                                            break;
+                                    }
+                                }
+                                break;
+                            case "customThumbnail":
+                                this.authorTypes |= Author.typeBit(AuthorType.MEMBER);
+                                this.memberBadgeIconURL = readThumbnailURL(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                                break;
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+        }
+        reader.endArray();
+    }
+
+    private String readMessage(JsonReader reader, List<Object> messageExtended) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        StringBuilder text = new StringBuilder();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("runs") && beginArray(reader)) {
+                while (reader.hasNext()) {
+                    this.readRun(reader, text, messageExtended);
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return text.length() == 0 ? null : text.toString();
+    }
+
+    private void readRun(JsonReader reader, StringBuilder text, List<Object> messageExtended) throws IOException {
+        if (!beginObject(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "text":
+                    String t = nextString(reader);
+                    if (t != null) {
+                        text.append(t);
+                        messageExtended.add(new Text(t));
+                    }
+                    break;
+                case "emoji":
+                    Emoji emoji = this.readEmoji(reader);
+                    if (emoji != null) {
+                        if (!emoji.shortcuts.isEmpty()) {
+                            text.append(" ").append(emoji.shortcuts.get(0)).append(" ");
+                        }
+                        messageExtended.add(emoji);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+    }
+
+    /**
+     * Read an emoji. If its id is registered, the registered Emoji is returned and the rest is skipped.
+     */
+    private Emoji readEmoji(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        Emoji emoji = new Emoji();
+        emoji.shortcuts = new ArrayList<>();
+        emoji.searchTerms = new ArrayList<>();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "emojiId":
+                    emoji.emojiId = nextString(reader);
+                    Emoji registered = this.getRegisteredEmoji(emoji.emojiId);
+                    if (registered != null) {
+                        while (reader.hasNext()) {
+                            reader.skipValue();
+                        }
+                        reader.endObject();
+                        return registered;
+                    }
+                    break;
+                case "shortcuts":
+                    readStringList(reader, emoji.shortcuts);
+                    break;
+                case "searchTerms":
+                    readStringList(reader, emoji.searchTerms);
+                    break;
+                case "image":
+                    emoji.iconURL = readThumbnailURL(reader);
+                    break;
+                case "isCustomEmoji":
+                    emoji.isCustomEmoji = nextBoolean(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        if (!emoji.isCustomEmoji) {
+            return EmojiRegistry.getStandard().register(emoji);
+        }
+        return this.customEmojis != null ? this.customEmojis.register(emoji) : emoji;
+    }
+
+    private Emoji getRegisteredEmoji(String emojiId) {
+        if (emojiId == null) {
+            return null;
+        }
+        Emoji emoji = EmojiRegistry.getStandard().get(emojiId);
+        if (emoji == null && this.customEmojis != null) {
+            emoji = this.customEmojis.get(emojiId);
+        }
+        return emoji;
+    }
+
+    /**
+     * Read the url of the largest thumbnail from an object which has "thumbnails" key.
+     */
+    static String readThumbnailURL(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        String url = null;
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("thumbnails") && beginArray(reader)) {
+                long size = 0;
+                while (reader.hasNext()) {
+                    if (!beginObject(reader)) {
+                        continue;
+                    }
+                    long width = 0;
+                    String u = null;
+                    while (reader.hasNext()) {
+                        switch (reader.nextName()) {
+                            case "url":
+                                u = nextString(reader);
+                                break;
+                            case "width":
+                                width = nextLong(reader);
+                                break;
+                            default:
+                                reader.skipValue();
+                                break;
+                        }
+                    }
+                    reader.endObject();
+                    if (u != null && size <= width) {
+                        size = width;
+                        url = u;
+                    }
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return url;
+    }
+
+    private static String readContextMenuParams(JsonReader reader) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        String params = null;
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("liveChatItemContextMenuEndpoint")) {
+                params = readKeyedString(reader, "params");
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return params;
+    }
+
+    static String readSimpleText(JsonReader reader) throws IOException {
+        return readKeyedString(reader, "simpleText");
+    }
+
+    /**
+     * Read a string value of the key from an object and skip the others.
+     */
+    static String readKeyedString(JsonReader reader, String key) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        String value = null;
+        while (reader.hasNext()) {
+            if (reader.nextName().equals(key)) {
+                value = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return value;
+    }
+
+    /**
+     * Read {"key": ..., "value": ...} and return the value if the key equals to the key.
+     */
+    private static String readKeyValue(JsonReader reader, String key) throws IOException {
+        if (!beginObject(reader)) {
+            return null;
+        }
+        String k = null;
+        String value = null;
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "key":
+                    k = nextString(reader);
+                    break;
+                case "value":
+                    value = nextString(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+        return key.equals(k) ? value : null;
+    }
+
+    private static void readStringList(JsonReader reader, List<String> list) throws IOException {
+        if (!beginArray(reader)) {
+            return;
+        }
+        while (reader.hasNext()) {
+            String s = nextString(reader);
+            if (s != null) {
+                list.add(s);
+            }
+        }
+        reader.endArray();
+    }
+
+    /**
+     * Begin an object if the next token is an object, otherwise skip the value.
+     *
+     * @return If the object has begun, returns true.
+     */
+    static boolean beginObject(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+            reader.beginObject();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    /**
+     * Begin an array if the next token is an array, otherwise skip the value.
+     *
+     * @return If the array has begun, returns true.
+     */
+    static boolean beginArray(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BEGIN_ARRAY) {
+            reader.beginArray();
+            return true;
+        }
+        reader.skipValue();
+        return false;
+    }
+
+    static String nextString(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case STRING:
+            case NUMBER:
+                return reader.nextString();
+            case BOOLEAN:
+                return String.valueOf(reader.nextBoolean());
+            default:
+                reader.skipValue();
+                return null;
+        }
+    }
+
+    static long nextLong(JsonReader reader) throws IOException {
+        String value = nextString(reader);
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException exception) {
+            return (long) Double.parseDouble(value);
+        }
+    }
+
+    static int nextInt(JsonReader reader) throws IOException {
+        return (int) nextLong(reader);
+    }
+
+    static boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return reader.nextBoolean();
+        }
+        return Boolean.parseBoolean(nextString(reader));
+    }
+
+    /**
+     * Reads a response kept in a String.
+     * If rewritesRenderers is true, LAZY_RENDERERS which have DEFERRED_FIELDS are rewritten before JsonReader
+     * reads them: LAZY_START with the position of the renderer is added as the first field,
+     * and the values of DEFERRED_FIELDS are replaced with 0.
+     * This only changes the text, so it doesn't depend on how JsonReader buffers it.
+     */
+    private static final class SourceReader extends Reader {
+        private static final String RENDERER = "Renderer\":{";
+
+        private final String json;
+        private final boolean rewritesRenderers;
+        private int position;
+        // Position where the text given to JsonReader is cut next
+        private int nextCut;
+        // Position of the '{' of the renderer to rewrite at nextCut, or -1
+        private int rendererStart;
+        // Text given to JsonReader before the rest of json
+        private char[] pending;
+        private int pendingPosition;
+        private int pendingLength;
+
+        private SourceReader(String json, int position, boolean rewritesRenderers) {
+            this.json = json;
+            this.rewritesRenderers = rewritesRenderers;
+            this.position = position;
+            this.nextCut = rewritesRenderers ? position : json.length();
+            this.rendererStart = -1;
+            this.pending = new char[0];
+        }
+
+        /**
+         * Find the next lazy renderer and cut the text just after its '{'.
+         */
+        private void findNextRenderer() {
+            int from = this.position;
+            while (true) {
+                int index = this.json.indexOf(RENDERER, from);
+                if (index < 0) {
+                    this.nextCut = this.json.length();
+                    this.rendererStart = -1;
+                    return;
+                }
+                int brace = index + RENDERER.length() - 1;
+                if (isLazyRenderer(this.json, index + "Renderer".length())) {
+                    this.nextCut = brace + 1;
+                    this.rendererStart = brace;
+                    return;
+                }
+                from = brace;
+            }
+        }
+
+        private static boolean isLazyRenderer(String json, int nameEnd) {
+            for (String name : LAZY_RENDERERS) {
+                int start = nameEnd - name.length();
+                if (start > 0 && json.charAt(start - 1) == '"' && json.startsWith(name, start)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Put the rewritten fields of the renderer at rendererStart to pending and skip them in json.
+         * Nothing is changed if the renderer has no DEFERRED_FIELDS or is not written as expected.
+         */
+        private void rewriteRenderer() {
+            String json = this.json;
+            int i = this.rendererStart + 1;
+            int length = this.append(0, "\"" + LAZY_START + "\":" + this.rendererStart + ",");
+            int deferred = 0;
+            while (true) {
+                i = skipWhitespace(json, i);
+                if (i >= json.length()) {
+                    return;
+                }
+                char c = json.charAt(i);
+                if (c == '}') {
+                    length = this.append(length, i, ++i);
+                    break;
+                }
+                if (c == ',') {
+                    length = this.append(length, i, ++i);
+                    continue;
+                }
+                int nameEnd = skipString(json, i);
+                int colon = nameEnd < 0 ? -1 : skipWhitespace(json, nameEnd);
+                if (colon < 0 || colon >= json.length() || json.charAt(colon) != ':') {
+                    return;
+                }
+                int valueEnd = skipValue(json, skipWhitespace(json, colon + 1));
+                if (valueEnd < 0) {
+                    return;
+                }
+                if (isDeferred(json, i + 1, nameEnd - 1)) {
+                    length = this.append(length, i, colon + 1);
+                    length = this.append(length, "0");
+                    deferred++;
+                } else {
+                    length = this.append(length, i, valueEnd);
+                }
+                i = valueEnd;
+            }
+            if (deferred == 0) {
+                return;
+            }
+            this.pendingPosition = 0;
+            this.pendingLength = length;
+            // Renderers inside the rewritten renderer are not rewritten
+            this.position = i;
+        }
+
+        private int append(int length, int start, int end) {
+            this.ensureCapacity(length + end - start);
+            this.json.getChars(start, end, this.pending, length);
+            return length + end - start;
+        }
+
+        private int append(int length, String text) {
+            this.ensureCapacity(length + text.length());
+            text.getChars(0, text.length(), this.pending, length);
+            return length + text.length();
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (this.pending.length < capacity) {
+                this.pending = Arrays.copyOf(this.pending, Math.max(capacity, this.pending.length * 2 + 256));
+            }
+        }
+
+        private static boolean isDeferred(String json, int start, int end) {
+            for (String field : DEFERRED_FIELDS) {
+                if (field.length() == end - start && json.startsWith(field, start)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static int skipWhitespace(String json, int i) {
+            while (i < json.length() && json.charAt(i) <= ' ') {
+                i++;
+            }
+            return i;
+        }
+
+        /**
+         * Get the position after the string starting at the position, or -1 if it doesn't end.
+         */
+        private static int skipString(String json, int i) {
+            if (json.charAt(i) != '"') {
+                return -1;
+            }
+            int end = i;
+            while (true) {
+                end = json.indexOf('"', end + 1);
+                if (end < 0) {
+                    return -1;
+                }
+                int backslashes = 0;
+                while (json.charAt(end - 1 - backslashes) == '\\') {
+                    backslashes++;
+                }
+                if (backslashes % 2 == 0) {
+                    return end + 1;
+                }
+            }
+        }
+
+        /**
+         * Get the position after the value starting at the position, or -1 if it doesn't end.
+         */
+        private static int skipValue(String json, int i) {
+            if (i >= json.length()) {
+                return -1;
+            }
+            char c = json.charAt(i);
+            if (c == '"') {
+                return skipString(json, i);
+            }
+            if (c == '{' || c == '[') {
+                int depth = 0;
+                while (i < json.length()) {
+                    c = json.charAt(i);
+                    if (c == '"') {
+                        i = skipString(json, i);
+                        if (i < 0) {
+                            return -1;
+                        }
+                        continue;
+                    }
+                    if (c == '{' || c == '[') {
+                        depth++;
+                    } else if ((c == '}' || c == ']') && --depth == 0) {
+                        return i + 1;
+                    }
+                    i++;
+                }
+                return -1;
+            }
+            while (i < json.length() && c != ',' && c != '}' && c != ']' && c > ' ') {
+                c = ++i < json.length() ? json.charAt(i) : ' ';
+            }
+            return i;
+        }
+
+        @Override
+        public int read(char[] cbuf, int off, int len) {
+            if (this.pendingPosition < this.pendingLength) {
+                int n = Math.min(len, this.pendingLength - this.pendingPosition);
+                System.arraycopy(this.pending, this.pendingPosition, cbuf, off, n);
+                this.pendingPosition += n;
+                return n;
+            }
+            if (this.rendererStart >= 0 && this.position == this.rendererStart + 1) {
+                this.rewriteRenderer();
+                this.rendererStart = -1;
+                if (this.pendingPosition < this.pendingLength) {
+                    return this.read(cbuf, off, len);
+                }
+            }
+            if (this.position >= this.json.length()) {
+                return -1;
+            }
+            if (this.rewritesRenderers && this.nextCut <= this.position) {
+                this.findNextRenderer();
+            }
+            int n = Math.min(len, this.nextCut - this.position);
+            this.json.getChars(this.position, this.position + n, cbuf, off);
+            this.position += n;
+            return n;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * Auto-moderation. Evaluates each item with a ChatRuleSet while update() parses it and
+ * submits the action of the matched rule to a ModerationQueue, so update() doesn't wait for moderation.
+ * Add this to YouTubeLiveChat using addListener().
+ * <p>
+ * Rules can be replaced using setRuleSet() at any time without stopping update().
+ */
+public class ChatRuleEngine implements ChatListener {
+    private final ModerationQueue queue;
+    private volatile ChatRuleSet ruleSet;
+    private volatile BiConsumer<ChatItem, ChatRuleSet.Rule> matchListener;
+    private final LongAdder matchCount;
+    // Actions which were not submitted because the queue was closed
+    private final LongAdder droppedCount;
+
+    /**
+     * Initialize ChatRuleEngine
+     *
+     * @param ruleSet Rules
+     * @param queue   Queue which moderates matched items, or null to only call the match listener
+     */
+    public ChatRuleEngine(ChatRuleSet ruleSet, ModerationQueue queue) {
+        this.ruleSet = Objects.requireNonNull(ruleSet);
+        this.queue = queue;
+        this.matchCount = new LongAdder();
+        this.droppedCount = new LongAdder();
+    }
+
+    /**
+     * Replace rules. Items which are being evaluated use the old rules.
+     *
+     * @param ruleSet Rules
+     */
+    public void setRuleSet(ChatRuleSet ruleSet) {
+        this.ruleSet = Objects.requireNonNull(ruleSet);
+    }
+
+    /**
+     * Get current rules.
+     *
+     * @return Rules
+     */
+    public ChatRuleSet getRuleSet() {
+        return this.ruleSet;
+    }
+
+    /**
+     * Set a listener which is called with the item and the matched rule before the action is submitted.
+     * This is called on the thread calling update().
+     *
+     * @param matchListener Listener or null
+     */
+    public void setMatchListener(BiConsumer<ChatItem, ChatRuleSet.Rule> matchListener) {
+        this.matchListener = matchListener;
+    }
+
+    /**
+     * Get number of matched items.
+     *
+     * @return Number of matched items
+     */
+    public long getMatchCount() {
+        return this.matchCount.sum();
+    }
+
+    /**
+     * Get number of actions which were dropped because the ModerationQueue was already closed.
+     *
+     * @return Number of dropped actions
+     */
+    public long getDroppedCount() {
+        return this.droppedCount.sum();
+    }
+
+    /**
+     * Evaluate an item and submit the action if a rule matches.
+     * If the queue is already closed, the action is dropped.
+     *
+     * @param chatItem ChatItem
+     * @return Matched rule or null
+     */
+    public ChatRuleSet.Rule evaluate(ChatItem chatItem) {
+        ChatRuleSet.Rule rule = this.ruleSet.match(chatItem);
+        if (rule == null) {
+            return null;
+        }
+        this.matchCount.increment();
+        BiConsumer<ChatItem, ChatRuleSet.Rule> listener = this.matchListener;
+        if (listener != null) {
+            listener.accept(chatItem, rule);
+        }
+        if (this.queue != null) {
+            try {
+                this.queue.submit(chatItem, rule.getAction());
+            } catch (IllegalStateException exception) {
+                // Don't stop update() which is parsing the response
+                this.droppedCount.increment();
+            }
+        }
+        return rule;
+    }
+
+    @Override
+    public void onMessage(ChatItem chatItem) {
+        this.evaluate(chatItem);
+    }
+
+    @Override
+    public void onPaidMessage(ChatItem chatItem) {
+        this.evaluate(chatItem);
+    }
+
+    @Override
+    public void onNewMember(ChatItem chatItem) {
+        this.evaluate(chatItem);
+    }
+}
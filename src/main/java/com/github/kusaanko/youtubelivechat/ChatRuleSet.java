@@ -0,0 +1,467 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.text.Normalizer;
+import java.util.*;
+
+/**
+ * Immutable set of auto-moderation rules compiled into an Aho-Corasick automaton.
+ * Phrases and words are matched against ChatItem#getMessage() in one pass, ignoring case and
+ * Unicode compatibility differences (NFKC, for example full-width letters).
+ * Emoji rules are matched against shortcuts and ids of Emoji in ChatItem#getMessageExtended().
+ * <p>
+ * This is thread-safe. To change rules, build a new ChatRuleSet and set it to ChatRuleEngine.
+ */
+public final class ChatRuleSet {
+    /**
+     * Rule set without any rules.
+     */
+    public static final ChatRuleSet EMPTY = new Builder().build();
+    // Max number of entries in the transition table (16MB)
+    private static final int MAX_TABLE_SIZE = 4 * 1024 * 1024;
+
+    /**
+     * Kinds of rules.
+     */
+    public enum Kind {
+        /**
+         * Matches the phrase anywhere in the message.
+         */
+        PHRASE,
+        /**
+         * Matches the word when it is not a part of another word.
+         */
+        WORD,
+        /**
+         * Matches an emoji by its shortcut (for example :smile:) or id.
+         */
+        EMOJI
+    }
+
+    private final List<Rule> rules;
+    // Automaton: edges of state s are edgeChar/edgeTarget[edgeStart[s], edgeStart[s + 1]), sorted by char
+    private final int[] edgeStart;
+    private final char[] edgeChar;
+    private final int[] edgeTarget;
+    private final int[] rootAscii;
+    private final int[] fail;
+    // Rules ending at state s are outRule[outStart[s], outStart[s + 1])
+    private final int[] outStart;
+    private final int[] outRule;
+    // Nearest state on the fail chain, including the state itself, which has rules, or 0
+    private final int[] outLink;
+    // Complete transition table delta[state * alphabetSize + charClass[c]], or null if it is too large
+    private final char[] charClass;
+    private final int alphabetSize;
+    private final int[] delta;
+    private final Map<String, Rule> emojiRules;
+
+    private ChatRuleSet(List<Rule> rules) {
+        this.rules = Collections.unmodifiableList(new ArrayList<>(rules));
+        // Trie
+        List<TreeMap<Character, Integer>> children = new ArrayList<>();
+        List<List<Integer>> outputs = new ArrayList<>();
+        children.add(new TreeMap<>());
+        outputs.add(new ArrayList<>());
+        Map<String, Rule> emojiRules = new HashMap<>();
+        for (int i = 0; i < this.rules.size(); i++) {
+            Rule rule = this.rules.get(i);
+            if (rule.kind == Kind.EMOJI) {
+                Rule old = emojiRules.get(rule.pattern);
+                if (old == null || rule.action.ordinal() > old.action.ordinal()) {
+                    emojiRules.put(rule.pattern, rule);
+                }
+                continue;
+            }
+            int state = 0;
+            for (int j = 0; j < rule.folded.length(); j++) {
+                char c = rule.folded.charAt(j);
+                Integer next = children.get(state).get(c);
+                if (next == null) {
+                    next = children.size();
+                    children.get(state).put(c, next);
+                    children.add(new TreeMap<>());
+                    outputs.add(new ArrayList<>());
+                }
+                state = next;
+            }
+            outputs.get(state).add(i);
+        }
+        this.emojiRules = emojiRules;
+        int size = children.size();
+        this.edgeStart = new int[size + 1];
+        this.edgeChar = new char[size - 1];
+        this.edgeTarget = new int[size - 1];
+        this.outStart = new int[size + 1];
+        int edges = 0;
+        int outs = 0;
+        for (int s = 0; s < size; s++) {
+            this.edgeStart[s] = edges;
+            for (Map.Entry<Character, Integer> edge : children.get(s).entrySet()) {
+                this.edgeChar[edges] = edge.getKey();
+                this.edgeTarget[edges] = edge.getValue();
+                edges++;
+            }
+            this.outStart[s] = outs;
+            outs += outputs.get(s).size();
+        }
+        this.edgeStart[size] = edges;
+        this.outStart[size] = outs;
+        this.outRule = new int[outs];
+        for (int s = 0, k = 0; s < size; s++) {
+            for (int rule : outputs.get(s)) {
+                this.outRule[k++] = rule;
+            }
+        }
+        this.rootAscii = new int[128];
+        Arrays.fill(this.rootAscii, -1);
+        for (Map.Entry<Character, Integer> edge : children.get(0).entrySet()) {
+            if (edge.getKey() < 128) {
+                this.rootAscii[edge.getKey()] = edge.getValue();
+            }
+        }
+        // Fail links in breadth first order
+        this.fail = new int[size];
+        this.outLink = new int[size];
+        int[] order = new int[size];
+        int ordered = 1;
+        ArrayDeque<Integer> queue = new ArrayDeque<>(children.get(0).values());
+        for (int child : queue) {
+            this.outLink[child] = this.hasOutput(child) ? child : 0;
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            order[ordered++] = state;
+            for (Map.Entry<Character, Integer> edge : children.get(state).entrySet()) {
+                int child = edge.getValue();
+                int f = this.fail[state];
+                int target;
+                while ((target = this.goTo(f, edge.getKey())) < 0 && f != 0) {
+                    f = this.fail[f];
+                }
+                this.fail[child] = target < 0 ? 0 : target;
+                this.outLink[child] = this.hasOutput(child) ? child : this.outLink[this.fail[child]];
+                queue.add(child);
+            }
+        }
+        // Chars which are not in any pattern share class 0, which always goes back to the root
+        this.charClass = new char[Character.MAX_VALUE + 1];
+        List<Character> alphabet = new ArrayList<>();
+        alphabet.add('\0');
+        for (char c : this.edgeChar) {
+            if (this.charClass[c] == 0) {
+                this.charClass[c] = (char) alphabet.size();
+                alphabet.add(c);
+            }
+        }
+        this.alphabetSize = alphabet.size();
+        if ((long) size * this.alphabetSize > MAX_TABLE_SIZE) {
+            this.delta = null;
+            return;
+        }
+        this.delta = new int[size * this.alphabetSize];
+        for (int i = 0; i < size; i++) {
+            int state = order[i];
+            int base = state * this.alphabetSize;
+            int failBase = this.fail[state] * this.alphabetSize;
+            for (int k = 1; k < this.alphabetSize; k++) {
+                int target = this.goTo(state, alphabet.get(k));
+                this.delta[base + k] = target >= 0 ? target : (state == 0 ? 0 : this.delta[failBase + k]);
+            }
+        }
+    }
+
+    /**
+     * Get all rules.
+     *
+     * @return Unmodifiable list of rules
+     */
+    public List<Rule> getRules() {
+        return this.rules;
+    }
+
+    /**
+     * Find the rule with the strongest action (BAN, TIMEOUT, then DELETE) which matches the item.
+     *
+     * @param chatItem ChatItem
+     * @return Matched rule or null
+     */
+    public Rule match(ChatItem chatItem) {
+        Rule matched = null;
+        List<Object> messageExtended = chatItem.getMessageExtended();
+        if (!this.emojiRules.isEmpty() && messageExtended != null) {
+            for (Object object : messageExtended) {
+                if (object instanceof Emoji) {
+                    matched = stronger(matched, this.matchEmoji((Emoji) object));
+                }
+            }
+        }
+        String message = chatItem.getMessage();
+        if (message != null && this.edgeChar.length > 0) {
+            matched = stronger(matched, this.match(message));
+        }
+        return matched;
+    }
+
+    /**
+     * Find the rule with the strongest action which matches the text. Emoji rules are not used.
+     *
+     * @param text Text
+     * @return Matched rule or null
+     */
+    public Rule match(String text) {
+        if (!isASCII(text)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        }
+        Rule matched = null;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < 0x80) {
+                state = this.next(state, c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, text.charAt(++i));
+                int folded = fold(codePoint);
+                if (Character.charCount(folded) != 2) {
+                    folded = codePoint;
+                }
+                state = this.next(state, Character.highSurrogate(folded));
+                state = this.next(state, Character.lowSurrogate(folded));
+            } else {
+                int folded = fold(c);
+                state = this.next(state, folded < 0x10000 ? (char) folded : c);
+            }
+            for (int s = this.outLink[state]; s != 0; s = this.outLink[this.fail[s]]) {
+                for (int k = this.outStart[s]; k < this.outStart[s + 1]; k++) {
+                    Rule rule = this.rules.get(this.outRule[k]);
+                    if (rule.kind == Kind.WORD && !isWord(text, i + 1 - rule.folded.length(), i + 1)) {
+                        continue;
+                    }
+                    matched = stronger(matched, rule);
+                    if (matched.action == ModerationQueue.Action.BAN) {
+                        return matched;
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+
+    private Rule matchEmoji(Emoji emoji) {
+        Rule matched = emoji.emojiId != null ? this.emojiRules.get(emoji.emojiId) : null;
+        if (emoji.shortcuts != null) {
+            for (String shortcut : emoji.shortcuts) {
+                matched = stronger(matched, this.emojiRules.get(shortcut));
+            }
+        }
+        return matched;
+    }
+
+    private int next(int state, char c) {
+        if (this.delta != null) {
+            return this.delta[state * this.alphabetSize + this.charClass[c]];
+        }
+        while (true) {
+            int target = this.goTo(state, c);
+            if (target >= 0) {
+                return target;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = this.fail[state];
+        }
+    }
+
+    private int goTo(int state, char c) {
+        if (state == 0 && c < 128) {
+            return this.rootAscii[c];
+        }
+        int low = this.edgeStart[state];
+        int high = this.edgeStart[state + 1] - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            char midChar = this.edgeChar[mid];
+            if (midChar < c) {
+                low = mid + 1;
+            } else if (midChar > c) {
+                high = mid - 1;
+            } else {
+                return this.edgeTarget[mid];
+            }
+        }
+        return -1;
+    }
+
+    private boolean hasOutput(int state) {
+        return this.outStart[state] != this.outStart[state + 1];
+    }
+
+    private static Rule stronger(Rule a, Rule b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.action.ordinal() > a.action.ordinal() ? b : a;
+    }
+
+    /**
+     * Check if text[start, end) is not a part of another word.
+     */
+    private static boolean isWord(String text, int start, int end) {
+        return (start <= 0 || !Character.isLetterOrDigit(text.codePointBefore(start)))
+                && (end >= text.length() || !Character.isLetterOrDigit(text.codePointAt(end)));
+    }
+
+    private static boolean isASCII(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int fold(int codePoint) {
+        if (codePoint < 0x80) {
+            return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+        }
+        return Character.toLowerCase(Character.toUpperCase(codePoint));
+    }
+
+    /**
+     * Normalize and fold a pattern in the same way as messages.
+     */
+    static String fold(String text) {
+        if (!isASCII(text)) {
+            text = Normalizer.normalize(text, Normalizer.Form.NFKC);
+        }
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            int folded = fold(codePoint);
+            builder.appendCodePoint(Character.charCount(folded) == Character.charCount(codePoint) ? folded : codePoint);
+            i += Character.charCount(codePoint);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * A rule.
+     */
+    public static final class Rule {
+        private final Kind kind;
+        private final String pattern;
+        private final ModerationQueue.Action action;
+        private final String folded;
+
+        private Rule(Kind kind, String pattern, ModerationQueue.Action action) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.action = action;
+            this.folded = kind == Kind.EMOJI ? pattern : fold(pattern);
+        }
+
+        public Kind getKind() {
+            return this.kind;
+        }
+
+        public String getPattern() {
+            return this.pattern;
+        }
+
+        public ModerationQueue.Action getAction() {
+            return this.action;
+        }
+
+        @Override
+        public String toString() {
+            return "Rule{" +
+                    "kind=" + kind +
+                    ", pattern='" + pattern + '\'' +
+                    ", action=" + action +
+                    '}';
+        }
+    }
+
+    /**
+     * Builds ChatRuleSet.
+     */
+    public static final class Builder {
+        private final List<Rule> rules = new ArrayList<>();
+
+        /**
+         * Add a rule which matches the phrase anywhere in the message.
+         *
+         * @param phrase Phrase
+         * @param action DELETE, TIMEOUT or BAN
+         * @return This builder
+         */
+        public Builder addPhrase(String phrase, ModerationQueue.Action action) {
+            return this.add(Kind.PHRASE, phrase, action);
+        }
+
+        /**
+         * Add a rule which matches the word when it is not a part of another word.
+         * Languages without spaces between words, such as Japanese, should use addPhrase().
+         *
+         * @param word   Word
+         * @param action DELETE, TIMEOUT or BAN
+         * @return This builder
+         */
+        public Builder addWord(String word, ModerationQueue.Action action) {
+            return this.add(Kind.WORD, word, action);
+        }
+
+        /**
+         * Add a rule which matches an emoji.
+         *
+         * @param shortcutOrId Shortcut (for example :smile:) or emoji id
+         * @param action       DELETE, TIMEOUT or BAN
+         * @return This builder
+         */
+        public Builder addEmoji(String shortcutOrId, ModerationQueue.Action action) {
+            return this.add(Kind.EMOJI, shortcutOrId, action);
+        }
+
+        /**
+         * Add rules, for example rules of another ChatRuleSet.
+         *
+         * @param rules Rules
+         * @return This builder
+         */
+        public Builder addAll(Collection<Rule> rules) {
+            this.rules.addAll(rules);
+            return this;
+        }
+
+        /**
+         * Add a rule.
+         *
+         * @param kind    Kind
+         * @param pattern Phrase, word or emoji
+         * @param action  DELETE, TIMEOUT or BAN
+         * @return This builder
+         */
+        public Builder add(Kind kind, String pattern, ModerationQueue.Action action) {
+            Objects.requireNonNull(kind);
+            if (pattern == null || pattern.isEmpty()) {
+                throw new IllegalArgumentException("pattern must not be empty!");
+            }
+            if (action != ModerationQueue.Action.DELETE && action != ModerationQueue.Action.TIMEOUT
+                    && action != ModerationQueue.Action.BAN) {
+                throw new IllegalArgumentException("action must be DELETE, TIMEOUT or BAN!");
+            }
+            this.rules.add(new Rule(kind, pattern, action));
+            return this;
+        }
+
+        /**
+         * Compile rules.
+         *
+         * @return ChatRuleSet
+         */
+        public ChatRuleSet build() {
+            return new ChatRuleSet(this.rules);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.github.kusaanko.youtubelivechat;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Snapshot of the state of a YouTubeLiveChat, which is used to continue the chat after a restart
+ * without downloading the watch page and the live_chat page again.
+ * Get it using YouTubeLiveChat#getSession(), save encode(), and pass decode() to the constructor of YouTubeLiveChat.
+ * <p>
+ * Cookies are not included. Pass them to the constructor again.
+ */
+public final class ChatSession {
+    private static final int VERSION = 1;
+    private static final Gson gson = new Gson();
+
+    @SerializedName("v")
+    int version;
+    @SerializedName("id")
+    String videoId;
+    @SerializedName("ch")
+    String channelId;
+    @SerializedName("r")
+    boolean isReplay;
+    @SerializedName("top")
+    boolean isTopChatOnly;
+    @SerializedName("key")
+    String apiKey;
+    @SerializedName("cv")
+    String clientVersion;
+    @SerializedName("vd")
+    String visitorData;
+    @SerializedName("ds")
+    String datasyncId;
+    @SerializedName("p")
+    String params;
+    @SerializedName("c")
+    String continuation;
+    @SerializedName("off")
+    long replayOffsetMs;
+
+    ChatSession() {
+        this.version = VERSION;
+    }
+
+    /**
+     * Encode this to a short json text.
+     *
+     * @return Encoded session
+     */
+    public String encode() {
+        return gson.toJson(this);
+    }
+
+    /**
+     * Decode a session encoded by encode().
+     *
+     * @param session Encoded session
+     * @return ChatSession
+     * @throws IllegalArgumentException The session is broken or made by an unsupported version
+     */
+    public static ChatSession decode(String session) {
+        ChatSession chatSession;
+        try {
+            chatSession = gson.fromJson(session, ChatSession.class);
+        } catch (JsonParseException exception) {
+            throw new IllegalArgumentException("Invalid session!", exception);
+        }
+        if (chatSession == null || chatSession.version != VERSION) {
+            throw new IllegalArgumentException("Unsupported session version!");
+        }
+        if (chatSession.videoId == null || chatSession.apiKey == null || chatSession.continuation == null) {
+            throw new IllegalArgumentException("Invalid session!");
+        }
+        return chatSession;
+    }
+
+    /**
+     * Get video id.
+     *
+     * @return Video id
+     */
+    public String getVideoId() {
+        return this.videoId;
+    }
+
+    /**
+     * Get channel id.
+     *
+     * @return Channel id
+     */
+    public String getChannelId() {
+        return this.channelId;
+    }
+
+    @Override
+    public String toString() {
+        return "ChatSession{" +
+                "videoId='" + videoId + '\'' +
+                ", channelId='" + channelId + '\'' +
+                ", isReplay=" + isReplay +
+                ", isTopChatOnly=" + isTopChatOnly +
+                '}';
+    }
+}
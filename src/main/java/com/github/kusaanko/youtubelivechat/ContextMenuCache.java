@@ -0,0 +1,147 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of params in context menus keyed by ChatItem#contextMenuParams.
+ * If this is set to YouTubeLiveChat, getContextMenu() and moderation use cached params without a request.
+ * Entries are evicted when they are older than the TTL or the cache is full (least recently used first).
+ * <p>
+ * This is thread-safe.
+ */
+public class ContextMenuCache {
+    /**
+     * Default max number of entries.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+    /**
+     * Default time to live in milli seconds.
+     */
+    public static final long DEFAULT_TTL_MS = 10 * 60 * 1000;
+
+    private final Map<String, Params> entries;
+    private final int capacity;
+    private final long ttlMs;
+
+    /**
+     * Initialize ContextMenuCache with DEFAULT_CAPACITY and DEFAULT_TTL_MS
+     */
+    public ContextMenuCache() {
+        this(DEFAULT_CAPACITY, DEFAULT_TTL_MS);
+    }
+
+    /**
+     * Initialize ContextMenuCache
+     *
+     * @param capacity Max number of entries
+     * @param ttlMs    Time to live in milli seconds
+     */
+    public ContextMenuCache(int capacity, long ttlMs) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be 1 or more!");
+        }
+        if (ttlMs <= 0) {
+            throw new IllegalArgumentException("ttlMs must be positive!");
+        }
+        this.capacity = capacity;
+        this.ttlMs = ttlMs;
+        this.entries = new LinkedHashMap<String, Params>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Params> eldest) {
+                return this.size() > ContextMenuCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Check if params of the item are cached.
+     *
+     * @param chatItem ChatItem
+     * @return If cached, returns true.
+     */
+    public boolean contains(ChatItem chatItem) {
+        chatItem.decode();
+        return this.get(chatItem.contextMenuParams) != null;
+    }
+
+    /**
+     * Set cached params to the item.
+     *
+     * @return If cached, returns true.
+     */
+    boolean apply(ChatItem chatItem) {
+        chatItem.decode();
+        Params entry = this.get(chatItem.contextMenuParams);
+        if (entry == null) {
+            return false;
+        }
+        chatItem.pinToTopParams = entry.pinToTopParams;
+        chatItem.chatDeleteParams = entry.chatDeleteParams;
+        chatItem.timeBanParams = entry.timeBanParams;
+        chatItem.userBanParams = entry.userBanParams;
+        chatItem.userUnbanParams = entry.userUnbanParams;
+        return true;
+    }
+
+    /**
+     * Cache params of the item. Items without any params are not cached.
+     */
+    void put(ChatItem chatItem) {
+        if (chatItem.contextMenuParams == null || (chatItem.pinToTopParams == null
+                && chatItem.chatDeleteParams == null && chatItem.timeBanParams == null
+                && chatItem.userBanParams == null && chatItem.userUnbanParams == null)) {
+            return;
+        }
+        Params entry = new Params(chatItem, System.currentTimeMillis() + this.ttlMs);
+        synchronized (this) {
+            this.entries.put(chatItem.contextMenuParams, entry);
+        }
+    }
+
+    private synchronized Params get(String contextMenuParams) {
+        if (contextMenuParams == null) {
+            return null;
+        }
+        Params entry = this.entries.get(contextMenuParams);
+        if (entry != null && entry.expiresAt <= System.currentTimeMillis()) {
+            this.entries.remove(contextMenuParams);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Get number of entries including expired entries which are not evicted yet.
+     *
+     * @return Number of entries
+     */
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    /**
+     * Remove all entries.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+    }
+
+    private static final class Params {
+        private final String pinToTopParams;
+        private final String chatDeleteParams;
+        private final String timeBanParams;
+        private final String userBanParams;
+        private final String userUnbanParams;
+        private final long expiresAt;
+
+        private Params(ChatItem chatItem, long expiresAt) {
+            this.pinToTopParams = chatItem.pinToTopParams;
+            this.chatDeleteParams = chatItem.chatDeleteParams;
+            this.timeBanParams = chatItem.timeBanParams;
+            this.userBanParams = chatItem.userBanParams;
+            this.userUnbanParams = chatItem.userUnbanParams;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
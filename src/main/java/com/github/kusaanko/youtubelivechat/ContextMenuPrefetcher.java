@@ -0,0 +1,110 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Resolves context menus of items matching a predicate in background, right after update() parses them.
+ * Moderation of these items is then a single request.
+ * This adds itself to the chat as a listener and sets a ContextMenuCache to the chat if it has none.
+ * <p>
+ * When too many items are waiting, new items are not prefetched.
+ * Failed requests are recorded to ChatMetrics of the chat.
+ * You need to set user data using YouTubeLiveChat#setUserData() before using this.
+ */
+public class ContextMenuPrefetcher implements ChatListener, AutoCloseable {
+    /**
+     * Max number of items waiting to be prefetched.
+     */
+    public static final int MAX_PENDING = 1024;
+
+    private final YouTubeLiveChat liveChat;
+    private final Predicate<ChatItem> predicate;
+    private final ContextMenuCache cache;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Initialize ContextMenuPrefetcher and start prefetching.
+     *
+     * @param liveChat       Chat of moderator
+     * @param predicate      Items to prefetch (for example, flagged authors or messages with links)
+     * @param maxConcurrency Max number of requests at the same time
+     */
+    public ContextMenuPrefetcher(YouTubeLiveChat liveChat, Predicate<ChatItem> predicate, int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive!");
+        }
+        this.liveChat = liveChat;
+        this.predicate = predicate;
+        if (liveChat.getContextMenuCache() == null) {
+            liveChat.setContextMenuCache(new ContextMenuCache());
+        }
+        this.cache = liveChat.getContextMenuCache();
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(maxConcurrency, maxConcurrency, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(MAX_PENDING), runnable -> {
+            Thread thread = new Thread(runnable, "ContextMenuPrefetcher-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+        liveChat.addListener(this);
+    }
+
+    /**
+     * Get number of items waiting to be prefetched.
+     *
+     * @return Number of items
+     */
+    public int getPendingCount() {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * Stop prefetching. Running requests are not interrupted.
+     */
+    @Override
+    public void close() {
+        this.liveChat.removeListener(this);
+        this.executor.shutdownNow();
+    }
+
+    private void prefetch(ChatItem chatItem) {
+        if (this.executor.isShutdown() || !this.predicate.test(chatItem)) {
+            return;
+        }
+        this.executor.execute(() -> {
+            if (chatItem.chatDeleteParams == null && !this.cache.contains(chatItem)) {
+                try {
+                    this.liveChat.fetchContextMenu(chatItem);
+                } catch (IOException ignore) {
+                    // Already recorded to ChatMetrics. Moderation requests the context menu again.
+                }
+            }
+        });
+    }
+
+    @Override
+    public void onMessage(ChatItem chatItem) {
+        this.prefetch(chatItem);
+    }
+
+    @Override
+    public void onPaidMessage(ChatItem chatItem) {
+        this.prefetch(chatItem);
+    }
+
+    @Override
+    public void onPaidSticker(ChatItem chatItem) {
+        this.prefetch(chatItem);
+    }
+
+    @Override
+    public void onNewMember(ChatItem chatItem) {
+        this.prefetch(chatItem);
+    }
+}
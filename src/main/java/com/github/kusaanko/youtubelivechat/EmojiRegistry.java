@@ -0,0 +1,108 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Registry of Emoji keyed by emojiId.
+ * Messages reference the registered Emoji instead of their own copies,
+ * and the parser skips the rest of an emoji when its id is already registered.
+ * Standard emojis are registered to getStandard() which is shared by all YouTubeLiveChat,
+ * and custom emojis are registered to the registry of each channel.
+ * <p>
+ * When the registry is full, new emojis are not registered but still returned as they are.
+ * This is thread-safe.
+ */
+public class EmojiRegistry {
+    /**
+     * Default max number of emojis.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private static final EmojiRegistry standard = new EmojiRegistry(DEFAULT_CAPACITY);
+
+    private final ConcurrentMap<String, Emoji> emojis;
+    private final int capacity;
+
+    /**
+     * Initialize EmojiRegistry
+     *
+     * @param capacity Max number of emojis
+     */
+    public EmojiRegistry(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be 1 or more!");
+        }
+        this.capacity = capacity;
+        this.emojis = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Get the registry of standard (not custom) emojis shared by all YouTubeLiveChat.
+     *
+     * @return EmojiRegistry of standard emojis
+     */
+    public static EmojiRegistry getStandard() {
+        return standard;
+    }
+
+    /**
+     * Get an emoji.
+     *
+     * @param emojiId Emoji id
+     * @return Emoji, or null if not registered
+     */
+    public Emoji get(String emojiId) {
+        return this.emojis.get(emojiId);
+    }
+
+    /**
+     * Register an emoji. Its lists become unmodifiable.
+     *
+     * @param emoji Emoji
+     * @return Registered Emoji which has the same id, or the emoji if this is full
+     */
+    Emoji register(Emoji emoji) {
+        if (emoji.emojiId == null) {
+            return emoji;
+        }
+        Emoji registered = this.emojis.get(emoji.emojiId);
+        if (registered != null) {
+            return registered;
+        }
+        if (this.emojis.size() >= this.capacity) {
+            return emoji;
+        }
+        emoji.shortcuts = Collections.unmodifiableList(emoji.shortcuts);
+        emoji.searchTerms = Collections.unmodifiableList(emoji.searchTerms);
+        registered = this.emojis.putIfAbsent(emoji.emojiId, emoji);
+        return registered != null ? registered : emoji;
+    }
+
+    /**
+     * Get all registered emojis.
+     *
+     * @return Unmodifiable view of emojis
+     */
+    public Collection<Emoji> getEmojis() {
+        return Collections.unmodifiableCollection(this.emojis.values());
+    }
+
+    /**
+     * Get number of registered emojis.
+     *
+     * @return Number of emojis
+     */
+    public int size() {
+        return this.emojis.size();
+    }
+
+    /**
+     * Remove all emojis.
+     */
+    public void clear() {
+        this.emojis.clear();
+    }
+}
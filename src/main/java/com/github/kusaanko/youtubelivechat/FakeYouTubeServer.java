@@ -0,0 +1,632 @@
+package com.github.kusaanko.youtubelivechat;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A local server which behaves like YouTube for YouTubeLiveChat.
+ * You can test your application or measure how many lives one JVM can watch without network.
+ * It serves watch pages, live_chat pages, get_live_chat, get_live_chat_replay, send_message,
+ * get_item_context_menu, moderate and live_chat_action.
+ * <p>
+ * Chat of a stream is generated from the time and the message rate, so all YouTubeLiveChat of the same stream
+ * receive the same items, and continuations advance like YouTube.
+ * Messages sent using sendMessage() appear in the chat of the stream.
+ *
+ * <pre>
+ * FakeYouTubeServer server = new FakeYouTubeServer(0);
+ * server.addStream("fakeVideo01", "UCfakeChannel", 50);
+ * server.start();
+ * YouTubeLiveChat.youtubeURL = server.getURL();
+ * YouTubeLiveChat.studioURL = server.getURL();
+ * YouTubeLiveChat chat = new YouTubeLiveChat("fakeVideo01", false, IdType.VIDEO);
+ * </pre>
+ */
+public class FakeYouTubeServer implements AutoCloseable {
+    /**
+     * innertubeApiKey in pages of this server.
+     */
+    public static final String API_KEY = "fake-api-key";
+
+    // Max number of items in a response of get_live_chat
+    private static final int MAX_ITEMS_PER_RESPONSE = 500;
+    // Length of chat returned by a request of get_live_chat_replay
+    private static final long REPLAY_WINDOW_MS = 20000;
+    private static final int AUTHOR_COUNT = 1000;
+    // Every this number of items is a Super Chat
+    private static final int PAID_MESSAGE_INTERVAL = 50;
+
+    private final HttpServer server;
+    private final Map<String, Stream> streams;
+    private final Map<String, LongAdder> requestCounts;
+    private ExecutorService executor;
+    private volatile long timeoutMs;
+    private volatile long responseDelayMs;
+
+    /**
+     * Initialize FakeYouTubeServer on localhost. Call start() to start it.
+     *
+     * @param port Port, or 0 to use a free port
+     * @throws IOException Couldn't open the port
+     */
+    public FakeYouTubeServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", this::handle);
+        this.streams = new ConcurrentHashMap<>();
+        this.requestCounts = new ConcurrentHashMap<>();
+        this.timeoutMs = 1000;
+    }
+
+    /**
+     * Start this.
+     */
+    public void start() {
+        if (this.executor == null) {
+            AtomicInteger count = new AtomicInteger();
+            this.executor = Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "FakeYouTubeServer-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.server.setExecutor(this.executor);
+        }
+        this.server.start();
+    }
+
+    /**
+     * Stop this.
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Get base url of this. Set this to YouTubeLiveChat.youtubeURL and YouTubeLiveChat.studioURL.
+     *
+     * @return Url like http://127.0.0.1:12345
+     */
+    public String getURL() {
+        InetSocketAddress address = this.server.getAddress();
+        return "http://" + address.getAddress().getHostAddress() + ":" + address.getPort();
+    }
+
+    /**
+     * Add a live stream.
+     * You can open it by the video id, or by the channel id using IdType.CHANNEL and IdType.USER.
+     *
+     * @param videoId           Video id
+     * @param channelId         Channel id
+     * @param messagesPerSecond Number of messages per second
+     * @return Stream
+     */
+    public Stream addStream(String videoId, String channelId, double messagesPerSecond) {
+        return this.addStream(new Stream(videoId, channelId, messagesPerSecond, -1));
+    }
+
+    /**
+     * Add a replay. Its chat starts at 0 ms and ends at durationMs.
+     *
+     * @param videoId           Video id
+     * @param channelId         Channel id
+     * @param messagesPerSecond Number of messages per second of the video
+     * @param durationMs        Length of the video in milli seconds
+     * @return Stream
+     */
+    public Stream addReplay(String videoId, String channelId, double messagesPerSecond, long durationMs) {
+        if (durationMs < 0) {
+            throw new IllegalArgumentException("durationMs must not be negative!");
+        }
+        return this.addStream(new Stream(videoId, channelId, messagesPerSecond, durationMs));
+    }
+
+    private Stream addStream(Stream stream) {
+        if (stream.videoId.contains(".")) {
+            throw new IllegalArgumentException("Video id must not contain '.'!");
+        }
+        this.streams.put(stream.videoId, stream);
+        return stream;
+    }
+
+    /**
+     * Remove a stream.
+     *
+     * @param videoId Video id
+     */
+    public void removeStream(String videoId) {
+        this.streams.remove(videoId);
+    }
+
+    /**
+     * Get a stream.
+     *
+     * @param videoId Video id
+     * @return Stream, or null if not found
+     */
+    public Stream getStream(String videoId) {
+        return this.streams.get(videoId);
+    }
+
+    /**
+     * Set timeoutMs sent in responses of get_live_chat. Default is 1000.
+     *
+     * @param timeoutMs Hint of the next request in milli seconds
+     */
+    public void setTimeoutMs(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Set the delay of all responses to simulate network latency. Default is 0.
+     *
+     * @param responseDelayMs Delay in milli seconds
+     */
+    public void setResponseDelayMs(long responseDelayMs) {
+        this.responseDelayMs = responseDelayMs;
+    }
+
+    /**
+     * Get number of requests received by an endpoint.
+     *
+     * @param endpoint One of watch, broadcast_info, live_chat, get_live_chat, get_live_chat_replay, send_message,
+     *                 get_item_context_menu, moderate and live_chat_action
+     * @return Number of requests
+     */
+    public long getRequestCount(String endpoint) {
+        LongAdder count = this.requestCounts.get(endpoint);
+        return count != null ? count.sum() : 0;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (this.responseDelayMs > 0) {
+                Thread.sleep(this.responseDelayMs);
+            }
+            String path = exchange.getRequestURI().getPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (path.equals("/watch")) {
+                Stream stream = this.streams.get(String.valueOf(query.get("v")));
+                if (query.containsKey("pbj")) {
+                    this.respond(exchange, "broadcast_info", stream == null ? null : stream.getBroadcastInfo());
+                } else {
+                    this.respond(exchange, "watch", stream == null ? null : stream.getWatchPage(true));
+                }
+            } else if (path.startsWith("/channel/") || path.startsWith("/@")) {
+                String channelId = path.substring(path.startsWith("/@") ? 2 : 9, path.lastIndexOf('/'));
+                Stream stream = this.findStreamByChannel(channelId);
+                this.respond(exchange, "watch", stream == null ? null : stream.getWatchPage(false));
+            } else if (path.equals("/live_chat")) {
+                Stream stream = this.streams.get(String.valueOf(query.get("v")));
+                this.respond(exchange, "live_chat", stream == null || stream.isReplay() ? null
+                        : stream.getLiveChatPage());
+            } else if (path.startsWith("/youtubei/v1/live_chat/")) {
+                String endpoint = path.substring(path.lastIndexOf('/') + 1);
+                JsonObject body = readBody(exchange);
+                this.respond(exchange, endpoint, this.handleApi(endpoint, body, query));
+            } else {
+                this.respond(exchange, "unknown", null);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException exception) {
+            exchange.sendResponseHeaders(400, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String handleApi(String endpoint, JsonObject body, Map<String, String> query) {
+        switch (endpoint) {
+            case "get_live_chat": {
+                String[] continuation = getString(body, "continuation").split("\\.");
+                Stream stream = this.streams.get(continuation[1]);
+                if (stream == null || stream.isReplay() || !continuation[0].equals("live")) {
+                    return null;
+                }
+                return stream.getLiveChat(Long.parseLong(continuation[2]), Integer.parseInt(continuation[3]),
+                        this.timeoutMs);
+            }
+            case "get_live_chat_replay": {
+                String[] continuation = getString(body, "continuation").split("\\.");
+                Stream stream = this.streams.get(continuation[1]);
+                if (stream == null || !stream.isReplay() || !continuation[0].equals("replay")) {
+                    return null;
+                }
+                JsonObject state = body.getAsJsonObject("currentPlayerState");
+                long offsetMs = state == null ? 0 : Long.parseLong(getString(state, "playerOffsetMs"));
+                return stream.getReplayChat(offsetMs);
+            }
+            case "send_message": {
+                Stream stream = this.streams.get(getString(body, "params").substring(5));
+                if (stream == null) {
+                    return null;
+                }
+                JsonObject richMessage = body.getAsJsonObject("richMessage");
+                JsonElement segments = richMessage == null ? null : richMessage.get("textSegments");
+                JsonObject segment = segments == null ? null
+                        : segments.isJsonArray() ? segments.getAsJsonArray().get(0).getAsJsonObject()
+                        : segments.getAsJsonObject();
+                stream.sent.add(segment == null ? "" : getString(segment, "text"));
+                return "{}";
+            }
+            case "get_item_context_menu":
+                return getContextMenu(String.valueOf(query.get("params")));
+            case "moderate":
+            case "live_chat_action":
+                return "{}";
+            default:
+                return null;
+        }
+    }
+
+    private Stream findStreamByChannel(String channelId) {
+        for (Stream stream : this.streams.values()) {
+            if (stream.channelId.equals(channelId)) {
+                return stream;
+            }
+        }
+        return null;
+    }
+
+    private void respond(HttpExchange exchange, String endpoint, String body) throws IOException {
+        this.requestCounts.computeIfAbsent(endpoint, key -> new LongAdder()).increment();
+        if (body == null) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                body.startsWith("<") ? "text/html; charset=utf-8" : "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buff = new byte[8192];
+            int n;
+            while ((n = in.read(buff)) > 0) {
+                out.write(buff, 0, n);
+            }
+        }
+        if (out.size() == 0) {
+            return new JsonObject();
+        }
+        // Parsed leniently like YouTube
+        return JsonParser.parseString(out.toString(StandardCharsets.UTF_8.name())).getAsJsonObject();
+    }
+
+    private static Map<String, String> parseQuery(String query) throws IOException {
+        Map<String, String> map = new HashMap<>();
+        if (query == null) {
+            return map;
+        }
+        for (String pair : query.split("&")) {
+            int i = pair.indexOf('=');
+            if (i < 0) {
+                map.put(URLDecoder.decode(pair, "UTF-8"), "");
+            } else {
+                map.put(URLDecoder.decode(pair.substring(0, i), "UTF-8"),
+                        URLDecoder.decode(pair.substring(i + 1), "UTF-8"));
+            }
+        }
+        return map;
+    }
+
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        if (element == null || element.isJsonNull()) {
+            throw new IllegalArgumentException("No " + key);
+        }
+        return element.getAsString();
+    }
+
+    private static String getContextMenu(String params) {
+        StringBuilder json = new StringBuilder(
+                "{\"liveChatItemContextMenuSupportedRenderers\":{\"menuRenderer\":{\"items\":[");
+        appendMenuItem(json, "KEEP", "liveChatActionEndpoint", "pin." + params).append(',');
+        appendMenuItem(json, "DELETE", "moderateLiveChatEndpoint", "delete." + params).append(',');
+        appendMenuItem(json, "HOURGLASS", "moderateLiveChatEndpoint", "timeout." + params).append(',');
+        appendMenuItem(json, "REMOVE_CIRCLE", "moderateLiveChatEndpoint", "ban." + params).append(',');
+        appendMenuItem(json, "ADD_CIRCLE", "moderateLiveChatEndpoint", "unban." + params);
+        return json.append("]}}}").toString();
+    }
+
+    private static StringBuilder appendMenuItem(StringBuilder json, String iconType, String endpoint,
+                                                String params) {
+        json.append("{\"menuServiceItemRenderer\":{\"icon\":{\"iconType\":\"").append(iconType)
+                .append("\"},\"serviceEndpoint\":{\"").append(endpoint).append("\":{\"params\":");
+        return appendString(json, params).append("}}}}");
+    }
+
+    private static StringBuilder appendString(StringBuilder json, String value) {
+        json.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"');
+    }
+
+    /**
+     * A live stream or a replay served by FakeYouTubeServer.
+     */
+    public static final class Stream {
+        private final String videoId;
+        private final String channelId;
+        // Length of replay, or -1 if this is live
+        private final long durationMs;
+        private final long startMillis;
+        private final List<String> sent;
+        private volatile Rate rate;
+
+        private Stream(String videoId, String channelId, double messagesPerSecond, long durationMs) {
+            if (messagesPerSecond < 0) {
+                throw new IllegalArgumentException("messagesPerSecond must not be negative!");
+            }
+            this.videoId = videoId;
+            this.channelId = channelId;
+            this.durationMs = durationMs;
+            this.startMillis = System.currentTimeMillis();
+            this.sent = new CopyOnWriteArrayList<>();
+            this.rate = new Rate(0, this.startMillis, messagesPerSecond);
+        }
+
+        /**
+         * Get video id.
+         *
+         * @return Video id
+         */
+        public String getVideoId() {
+            return this.videoId;
+        }
+
+        /**
+         * Check if this is replay.
+         *
+         * @return If this is replay, returns true.
+         */
+        public boolean isReplay() {
+            return this.durationMs >= 0;
+        }
+
+        /**
+         * Change the message rate. Messages generated before this are not changed.
+         *
+         * @param messagesPerSecond Number of messages per second
+         */
+        public synchronized void setMessagesPerSecond(double messagesPerSecond) {
+            if (messagesPerSecond < 0) {
+                throw new IllegalArgumentException("messagesPerSecond must not be negative!");
+            }
+            long now = System.currentTimeMillis();
+            this.rate = new Rate(this.rate.indexAt(now), now, messagesPerSecond);
+        }
+
+        /**
+         * Get number of generated messages of live.
+         *
+         * @return Number of messages
+         */
+        public long getMessageCount() {
+            return this.rate.indexAt(System.currentTimeMillis());
+        }
+
+        /**
+         * Get messages sent to this stream using sendMessage().
+         *
+         * @return Messages
+         */
+        public List<String> getSentMessages() {
+            return this.sent;
+        }
+
+        private String getContinuation(long nextIndex, int nextSent) {
+            if (this.isReplay()) {
+                return "replay." + this.videoId;
+            }
+            return "live." + this.videoId + "." + nextIndex + "." + nextSent;
+        }
+
+        private String getWatchPage(boolean isVideoPage) {
+            String continuation = this.getContinuation(this.getMessageCount(), this.sent.size());
+            StringBuilder html = new StringBuilder("<!DOCTYPE html><html><head><title>")
+                    .append(this.videoId).append("</title></head><body>\n<script>ytcfg.set({\"innertubeApiKey\":\"")
+                    .append(API_KEY).append("\",\"datasyncId\":\"fakeDatasyncId||\"});</script>\n")
+                    .append("<script>var ytInitialPlayerResponse = {\"videoDetails\":{\"videoId\":\"")
+                    .append(this.videoId).append("\",\"channelId\":\"").append(this.channelId)
+                    .append("\",\"isOwnerViewing\":false,\"isLiveContent\":true}};</script>\n")
+                    .append("<script>var ytInitialData = {\"contents\":{\"conversationBar\":{\"liveChatRenderer\":{")
+                    .append("\"header\":{\"viewSelector\":{\"subMenuItems\":[")
+                    .append("{\"title\":\"Top chat\",\"selected\":true,\"continuation\":{\"reloadContinuationData\":")
+                    .append("{\"continuation\":\"").append(continuation).append("\"}}},")
+                    .append("{\"title\":\"Live chat\",\"selected\":false,\"continuation\":{\"reloadContinuationData\":")
+                    .append("{\"continuation\":\"").append(continuation).append("\"}}}]}},")
+                    .append("\"isReplay\":").append(this.isReplay()).append("}}}");
+            if (!isVideoPage) {
+                html.append(",\"updatedMetadataEndpoint\":{\"videoId\":\"").append(this.videoId).append("\"}");
+            }
+            return html.append("};</script>\n</body></html>").toString();
+        }
+
+        private String getLiveChatPage() {
+            return "<!DOCTYPE html><html><head></head><body>\n<script>window[\"ytInitialData\"] = "
+                    + "{\"contents\":{\"liveChatRenderer\":{\"continuations\":[{\"invalidationContinuationData\":"
+                    + "{\"timeoutMs\":1000,\"continuation\":\""
+                    + this.getContinuation(this.getMessageCount(), this.sent.size()) + "\"}}],"
+                    + "\"actionPanel\":{\"liveChatMessageInputRenderer\":{\"sendButton\":{\"buttonRenderer\":"
+                    + "{\"serviceEndpoint\":{\"sendLiveChatMessageEndpoint\":{\"params\":\"send." + this.videoId
+                    + "\"}}}}}}}}};</script>\n</body></html>";
+        }
+
+        private String getBroadcastInfo() {
+            StringBuilder json = new StringBuilder("{\"page\":\"watch\",\"playerResponse\":{\"microformat\":")
+                    .append("{\"playerMicroformatRenderer\":{\"liveBroadcastDetails\":{\"isLiveNow\":")
+                    .append(!this.isReplay()).append(",\"startTimestamp\":\"")
+                    .append(Instant.ofEpochMilli(this.startMillis)).append('"');
+            if (this.isReplay()) {
+                json.append(",\"endTimestamp\":\"").append(Instant.ofEpochMilli(this.startMillis + this.durationMs))
+                        .append('"');
+            }
+            return json.append("}}}}}").toString();
+        }
+
+        private String getLiveChat(long nextIndex, int nextSent, long timeoutMs) {
+            long now = System.currentTimeMillis();
+            Rate rate = this.rate;
+            long end = Math.min(rate.indexAt(now), nextIndex + MAX_ITEMS_PER_RESPONSE);
+            StringBuilder json = startResponse();
+            boolean isFirst = true;
+            for (long i = nextIndex; i < end; i++) {
+                if (!isFirst) {
+                    json.append(',');
+                }
+                isFirst = false;
+                json.append("{\"addChatItemAction\":{\"item\":");
+                appendItem(json, this.videoId + "." + i, i, rate.timeOf(i) * 1000, null);
+                json.append(",\"clientId\":\"fake\"}}");
+            }
+            int sentCount = this.sent.size();
+            for (int i = nextSent; i < sentCount; i++) {
+                if (!isFirst) {
+                    json.append(',');
+                }
+                isFirst = false;
+                json.append("{\"addChatItemAction\":{\"item\":");
+                appendItem(json, this.videoId + ".sent." + i, -1, now * 1000, this.sent.get(i));
+                json.append("}}");
+            }
+            json.append("],\"continuations\":[{\"invalidationContinuationData\":{\"timeoutMs\":").append(timeoutMs)
+                    .append(",\"continuation\":\"").append(this.getContinuation(end, sentCount)).append("\"}}]");
+            return json.append("}}}").toString();
+        }
+
+        private String getReplayChat(long offsetMs) {
+            double messagesPerSecond = this.rate.messagesPerSecond;
+            long total = (long) (this.durationMs * messagesPerSecond / 1000);
+            long windowEnd = offsetMs + REPLAY_WINDOW_MS;
+            long first = messagesPerSecond == 0 ? total : (long) Math.ceil(offsetMs * messagesPerSecond / 1000);
+            StringBuilder json = startResponse();
+            for (long i = first; i < total; i++) {
+                long videoOffsetMs = (long) (i * 1000 / messagesPerSecond);
+                if (videoOffsetMs >= windowEnd) {
+                    break;
+                }
+                if (i != first) {
+                    json.append(',');
+                }
+                json.append("{\"replayChatItemAction\":{\"actions\":[{\"addChatItemAction\":{\"item\":");
+                appendItem(json, this.videoId + "." + i, i, (this.startMillis + videoOffsetMs) * 1000, null);
+                json.append("}}],\"videoOffsetTimeMsec\":\"").append(videoOffsetMs).append("\"}}");
+            }
+            json.append("]");
+            // The last response of replay has only playerSeekContinuationData
+            if (windowEnd < this.durationMs) {
+                json.append(",\"continuations\":[{\"liveChatReplayContinuationData\":{\"continuation\":\"")
+                        .append(this.getContinuation(0, 0)).append("\"}}]");
+            } else {
+                json.append(",\"continuations\":[{\"playerSeekContinuationData\":{\"continuation\":\"")
+                        .append(this.getContinuation(0, 0)).append("\"}}]");
+            }
+            return json.append("}}}").toString();
+        }
+
+        private static StringBuilder startResponse() {
+            return new StringBuilder(4096).append("{\"responseContext\":{\"visitorData\":\"fakeVisitorData\",")
+                    .append("\"serviceTrackingParams\":[{\"service\":\"CSI\",\"params\":[{\"key\":\"cver\",")
+                    .append("\"value\":\"2.20240101.00.00\"}]}]},")
+                    .append("\"continuationContents\":{\"liveChatContinuation\":{\"actions\":[");
+        }
+
+        /**
+         * Append a renderer. Every PAID_MESSAGE_INTERVAL generated item is a Super Chat.
+         */
+        private static void appendItem(StringBuilder json, String id, long index, long timestampUsec, String text) {
+            int author = index < 0 ? 0 : (int) (index % AUTHOR_COUNT);
+            boolean isPaid = index > 0 && index % PAID_MESSAGE_INTERVAL == 0;
+            json.append(isPaid ? "{\"liveChatPaidMessageRenderer\":{" : "{\"liveChatTextMessageRenderer\":{")
+                    .append("\"message\":{\"runs\":[{\"text\":");
+            appendString(json, text != null ? text : "Message " + index);
+            json.append("}]},\"authorName\":{\"simpleText\":\"")
+                    .append(index < 0 ? "You" : "Viewer " + author)
+                    .append("\"},\"authorPhoto\":{\"thumbnails\":[{\"url\":\"https://yt4.ggpht.com/fake/")
+                    .append(author).append("\",\"width\":64,\"height\":64}]},")
+                    .append("\"contextMenuEndpoint\":{\"liveChatItemContextMenuEndpoint\":{\"params\":\"")
+                    .append(id).append("\"}},\"id\":\"").append(id).append("\",\"timestampUsec\":\"")
+                    .append(timestampUsec).append("\",\"authorExternalChannelId\":\"UCfakeViewer")
+                    .append(String.format("%010d", author)).append('"');
+            if (author % 10 == 0) {
+                json.append(",\"authorBadges\":[{\"liveChatAuthorBadgeRenderer\":{\"customThumbnail\":")
+                        .append("{\"thumbnails\":[{\"url\":\"https://yt3.ggpht.com/fake/badge\"}]},")
+                        .append("\"tooltip\":\"Member (1 year)\"}}]");
+            }
+            if (isPaid) {
+                json.append(",\"purchaseAmountText\":{\"simpleText\":\"$5.00\"},")
+                        .append("\"headerBackgroundColor\":4278239141,\"headerTextColor\":4278190080,")
+                        .append("\"bodyBackgroundColor\":4280150454,\"bodyTextColor\":4278190080,")
+                        .append("\"authorNameTextColor\":2315255808");
+            }
+            json.append("}}");
+        }
+    }
+
+    /**
+     * Message rate from a point of time. Item i of live is generated at timeOf(i).
+     */
+    private static final class Rate {
+        private final long baseIndex;
+        private final long baseMillis;
+        private final double messagesPerSecond;
+
+        private Rate(long baseIndex, long baseMillis, double messagesPerSecond) {
+            this.baseIndex = baseIndex;
+            this.baseMillis = baseMillis;
+            this.messagesPerSecond = messagesPerSecond;
+        }
+
+        private long indexAt(long millis) {
+            return this.baseIndex + (long) (Math.max(0, millis - this.baseMillis) * this.messagesPerSecond / 1000);
+        }
+
+        private long timeOf(long index) {
+            if (index <= this.baseIndex || this.messagesPerSecond == 0) {
+                return this.baseMillis;
+            }
+            return this.baseMillis + (long) ((index - this.baseIndex) * 1000 / this.messagesPerSecond);
+        }
+    }
+}
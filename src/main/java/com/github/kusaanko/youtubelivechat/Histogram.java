@@ -0,0 +1,110 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non negative values.
+ * Values under 16 are counted exactly, and larger values are counted in 8 buckets per power of 2,
+ * so percentiles are at most 12.5% larger than the real values.
+ * Buckets are striped adders created on first use, so unused ranges don't take memory.
+ */
+final class Histogram {
+    private static final int LINEAR = 16;
+    private static final int SUB_BITS = 3;
+    private static final int BUCKETS = LINEAR + ((64 - 4) << SUB_BITS);
+
+    private final AtomicReferenceArray<LongAdder> buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final LongAccumulator max;
+
+    Histogram() {
+        this.buckets = new AtomicReferenceArray<>(BUCKETS);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new LongAccumulator(Math::max, 0);
+    }
+
+    /**
+     * Record a value. Negative values are recorded as 0.
+     *
+     * @param value Value
+     */
+    void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        int index = index(value);
+        LongAdder bucket = this.buckets.get(index);
+        if (bucket == null) {
+            this.buckets.compareAndSet(index, null, new LongAdder());
+            bucket = this.buckets.get(index);
+        }
+        bucket.increment();
+        this.count.increment();
+        this.sum.add(value);
+        this.max.accumulate(value);
+    }
+
+    long getCount() {
+        return this.count.sum();
+    }
+
+    long getSum() {
+        return this.sum.sum();
+    }
+
+    long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Get the value at the quantile. Values recorded during this call may or may not be counted.
+     *
+     * @param quantile Quantile from 0 to 1
+     * @return Upper bound of the bucket which has the quantile, or 0 if nothing is recorded
+     */
+    long getValueAt(double quantile) {
+        long[] counts = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            LongAdder bucket = this.buckets.get(i);
+            if (bucket != null) {
+                counts[i] = bucket.sum();
+                total += counts[i];
+            }
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(upperBound(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    static int index(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) ((value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1));
+        return LINEAR + ((exponent - 4) << SUB_BITS) + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = ((index - LINEAR) >> SUB_BITS) + 4;
+        int sub = (index - LINEAR) & ((1 << SUB_BITS) - 1);
+        return (((long) (1 << SUB_BITS) + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+}
@@ -0,0 +1,173 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Growable UTF-8 buffer to write json without intermediate Strings.
+ * Call clear() to reuse the buffer for the next request body.
+ */
+final class JsonBuffer {
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    private byte[] buffer;
+    private int length;
+
+    JsonBuffer(int capacity) {
+        this.buffer = new byte[capacity];
+    }
+
+    JsonBuffer clear() {
+        this.length = 0;
+        return this;
+    }
+
+    /**
+     * Append bytes which are already json (for example a template).
+     */
+    JsonBuffer raw(byte[] bytes) {
+        this.ensure(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.length, bytes.length);
+        this.length += bytes.length;
+        return this;
+    }
+
+    /**
+     * Append ASCII text which is already json.
+     */
+    JsonBuffer raw(String ascii) {
+        this.ensure(ascii.length());
+        for (int i = 0; i < ascii.length(); i++) {
+            this.buffer[this.length++] = (byte) ascii.charAt(i);
+        }
+        return this;
+    }
+
+    /**
+     * Append a json string. null is written as null.
+     */
+    JsonBuffer string(String value) {
+        if (value == null) {
+            return this.raw("null");
+        }
+        // Most values are ASCII without escapes, which takes 2 + length bytes
+        this.ensure(value.length() + 2);
+        this.buffer[this.length++] = '"';
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\') {
+                this.ensure(1);
+                this.buffer[this.length++] = (byte) c;
+            } else {
+                i = this.escape(value, i);
+            }
+        }
+        this.ensure(1);
+        this.buffer[this.length++] = '"';
+        return this;
+    }
+
+    /**
+     * Append a char which needs escaping or UTF-8 encoding.
+     *
+     * @return Index of the last consumed char
+     */
+    private int escape(String value, int i) {
+        char c = value.charAt(i);
+        this.ensure(6);
+        switch (c) {
+            case '"':
+            case '\\':
+                this.buffer[this.length++] = '\\';
+                this.buffer[this.length++] = (byte) c;
+                return i;
+            case '\n':
+                this.buffer[this.length++] = '\\';
+                this.buffer[this.length++] = 'n';
+                return i;
+            case '\r':
+                this.buffer[this.length++] = '\\';
+                this.buffer[this.length++] = 'r';
+                return i;
+            case '\t':
+                this.buffer[this.length++] = '\\';
+                this.buffer[this.length++] = 't';
+                return i;
+            default:
+                break;
+        }
+        if (c < 0x20) {
+            this.buffer[this.length++] = '\\';
+            this.buffer[this.length++] = 'u';
+            this.buffer[this.length++] = '0';
+            this.buffer[this.length++] = '0';
+            this.buffer[this.length++] = HEX[c >> 4];
+            this.buffer[this.length++] = HEX[c & 0xF];
+        } else if (c < 0x800) {
+            this.buffer[this.length++] = (byte) (0xC0 | (c >> 6));
+            this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+        } else if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                && Character.isLowSurrogate(value.charAt(i + 1))) {
+            int codePoint = Character.toCodePoint(c, value.charAt(i + 1));
+            this.buffer[this.length++] = (byte) (0xF0 | (codePoint >> 18));
+            this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            this.buffer[this.length++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            this.buffer[this.length++] = (byte) (0x80 | (codePoint & 0x3F));
+            return i + 1;
+        } else if (Character.isSurrogate(c)) {
+            // Lone surrogate can't be encoded in UTF-8
+            this.buffer[this.length++] = '?';
+        } else {
+            this.buffer[this.length++] = (byte) (0xE0 | (c >> 12));
+            this.buffer[this.length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+            this.buffer[this.length++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return i;
+    }
+
+    JsonBuffer number(long value) {
+        if (value == Long.MIN_VALUE) {
+            return this.raw(Long.toString(value));
+        }
+        this.ensure(20);
+        if (value < 0) {
+            this.buffer[this.length++] = '-';
+            value = -value;
+        }
+        int start = this.length;
+        do {
+            this.buffer[this.length++] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        // Digits are written in reverse order
+        for (int i = start, j = this.length - 1; i < j; i++, j--) {
+            byte b = this.buffer[i];
+            this.buffer[i] = this.buffer[j];
+            this.buffer[j] = b;
+        }
+        return this;
+    }
+
+    byte[] getBuffer() {
+        return this.buffer;
+    }
+
+    int length() {
+        return this.length;
+    }
+
+    byte[] toByteArray() {
+        return Arrays.copyOf(this.buffer, this.length);
+    }
+
+    @Override
+    public String toString() {
+        return new String(this.buffer, 0, this.length, StandardCharsets.UTF_8);
+    }
+
+    private void ensure(int n) {
+        if (this.length + n > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.length + n));
+        }
+    }
+}
@@ -26,6 +26,17 @@ public class LiveBroadcastDetails {
         return endTimestamp;
     }
 
+    /**
+     * Copy this. Cached details are copied before they are returned because fields are public.
+     */
+    LiveBroadcastDetails copy() {
+        LiveBroadcastDetails details = new LiveBroadcastDetails();
+        details.isLiveNow = this.isLiveNow;
+        details.startTimestamp = this.startTimestamp;
+        details.endTimestamp = this.endTimestamp;
+        return details;
+    }
+
     @Override
     public String toString() {
         return "LiveBroadcastDetails{" +
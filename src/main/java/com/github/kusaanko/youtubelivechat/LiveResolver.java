@@ -0,0 +1,290 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Resolves many channels to their current live video at once.
+ * Requests are sent by a fixed number of threads, and results are cached:
+ * live channels for liveTtlMs, offline channels for offlineTtlMs and handles for handleTtlMs.
+ * When a cached result expires, the page is requested with If-None-Match and If-Modified-Since
+ * if the last response had ETag or Last-Modified, and a 304 response reuses the cached result.
+ * Only the head of the live page of a channel is read, so the rest of the page is not downloaded.
+ * <p>
+ * Calls for the same channel at the same time share one request.
+ */
+public class LiveResolver implements AutoCloseable {
+    /**
+     * Default time to keep the video id of a live channel in milli seconds.
+     */
+    public static final long DEFAULT_LIVE_TTL_MS = 5 * 60 * 1000;
+    /**
+     * Default time to keep a channel which is not live streaming in milli seconds.
+     */
+    public static final long DEFAULT_OFFLINE_TTL_MS = 2 * 60 * 1000;
+    /**
+     * Default time to keep the channel id of a handle in milli seconds.
+     */
+    public static final long DEFAULT_HANDLE_TTL_MS = 24 * 60 * 60 * 1000;
+
+    private final String baseURL;
+    private final ExecutorService executor;
+    // Results by channel id and by handle
+    private final ConcurrentMap<String, Result> liveVideos;
+    private final ConcurrentMap<String, Result> channelIds;
+    private volatile long liveTtlMs;
+    private volatile long offlineTtlMs;
+    private volatile long handleTtlMs;
+    private volatile boolean isClosed;
+
+    /**
+     * Initialize LiveResolver
+     *
+     * @param maxConcurrency Max number of requests sent at the same time
+     */
+    public LiveResolver(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive!");
+        }
+        this.baseURL = YouTubeLiveChat.youtubeURL;
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "LiveResolver-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.liveVideos = new ConcurrentHashMap<>();
+        this.channelIds = new ConcurrentHashMap<>();
+        this.liveTtlMs = DEFAULT_LIVE_TTL_MS;
+        this.offlineTtlMs = DEFAULT_OFFLINE_TTL_MS;
+        this.handleTtlMs = DEFAULT_HANDLE_TTL_MS;
+    }
+
+    /**
+     * Get the live video id of a channel.
+     *
+     * @param channelId Channel id
+     * @return Future which completes with the video id, or null if the channel is not live streaming
+     * @throws IllegalStateException This resolver is already closed
+     */
+    public CompletableFuture<String> resolve(String channelId) {
+        return this.get(this.liveVideos, channelId, false);
+    }
+
+    /**
+     * Get the live video ids of channels and wait for them.
+     * Channels which are not live streaming and channels whose requests failed are not included.
+     * Use resolve() to know the errors.
+     *
+     * @param channelIds Channel ids
+     * @return Map of channel id and video id
+     * @throws InterruptedException Interrupted while waiting
+     * @throws IllegalStateException This resolver is already closed
+     */
+    public Map<String, String> resolveAll(Collection<String> channelIds) throws InterruptedException {
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (String channelId : channelIds) {
+            futures.put(channelId, this.resolve(channelId));
+        }
+        return join(futures);
+    }
+
+    /**
+     * Get the channel id of a handle.
+     *
+     * @param handle Handle with or without '@'
+     * @return Future which completes with the channel id, or null if the handle is not found
+     * @throws IllegalStateException This resolver is already closed
+     */
+    public CompletableFuture<String> resolveHandle(String handle) {
+        return this.get(this.channelIds, normalizeHandle(handle), true);
+    }
+
+    /**
+     * Get the channel ids of handles and wait for them.
+     * Handles which are not found and handles whose requests failed are not included.
+     *
+     * @param handles Handles with or without '@'
+     * @return Map of handle (as given) and channel id
+     * @throws InterruptedException Interrupted while waiting
+     * @throws IllegalStateException This resolver is already closed
+     */
+    public Map<String, String> resolveHandles(Collection<String> handles) throws InterruptedException {
+        Map<String, CompletableFuture<String>> futures = new LinkedHashMap<>();
+        for (String handle : handles) {
+            futures.put(handle, this.resolveHandle(handle));
+        }
+        return join(futures);
+    }
+
+    private static String normalizeHandle(String handle) {
+        return handle.startsWith("@") ? handle.substring(1) : handle;
+    }
+
+    private static Map<String, String> join(Map<String, CompletableFuture<String>> futures)
+            throws InterruptedException {
+        Map<String, String> values = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<String>> entry : futures.entrySet()) {
+            try {
+                String value = entry.getValue().get();
+                if (value != null) {
+                    values.put(entry.getKey(), value);
+                }
+            } catch (ExecutionException | CancellationException ignore) {
+            }
+        }
+        return values;
+    }
+
+    private CompletableFuture<String> get(ConcurrentMap<String, Result> cache, String key, boolean isHandle) {
+        if (this.isClosed) {
+            throw new IllegalStateException("This resolver is already closed!");
+        }
+        while (true) {
+            Result result = cache.get(key);
+            if (result != null && !this.isExpired(result, isHandle, System.currentTimeMillis())) {
+                return result.future;
+            }
+            Result newResult = new Result();
+            if (result == null ? cache.putIfAbsent(key, newResult) != null : !cache.replace(key, result, newResult)) {
+                // Another thread started a request
+                continue;
+            }
+            try {
+                this.executor.execute(() -> this.fetch(cache, key, isHandle, result, newResult));
+            } catch (RejectedExecutionException exception) {
+                cache.remove(key, newResult);
+                newResult.future.completeExceptionally(
+                        new IllegalStateException("This resolver is already closed!", exception));
+            }
+            return newResult.future;
+        }
+    }
+
+    private boolean isExpired(Result result, boolean isHandle, long now) {
+        if (!result.future.isDone()) {
+            return false;
+        }
+        long ttl;
+        if (isHandle) {
+            ttl = result.value != null ? this.handleTtlMs : this.offlineTtlMs;
+        } else {
+            ttl = result.value != null ? this.liveTtlMs : this.offlineTtlMs;
+        }
+        return now - result.completedAt >= ttl;
+    }
+
+    /**
+     * Request the page of a channel or a handle. The validators of the last result are sent to revalidate it.
+     */
+    private void fetch(ConcurrentMap<String, Result> cache, String key, boolean isHandle, Result last,
+                       Result result) {
+        try {
+            String url = isHandle ? this.baseURL + "/@" + key : this.baseURL + "/channel/" + key + "/live";
+            Util.ConditionalPage page = Util.getPageIfModified(url, Collections.emptyMap(),
+                    last != null ? last.etag : null, last != null ? last.lastModified : null);
+            if (page.isNotModified() && last != null) {
+                result.value = last.value;
+                result.etag = page.etag != null ? page.etag : last.etag;
+                result.lastModified = page.lastModified != null ? page.lastModified : last.lastModified;
+            } else if (page.reader != null) {
+                PageExtractor extractor = isHandle ? YouTubeLiveChat.newChannelPageExtractor()
+                        : YouTubeLiveChat.newChannelLivePageExtractor();
+                extractor.extract(page.reader);
+                result.value = isHandle ? YouTubeLiveChat.getChannelId(extractor)
+                        : YouTubeLiveChat.getLiveVideoId(extractor);
+                result.etag = page.etag;
+                result.lastModified = page.lastModified;
+            } else if (page.statusCode != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new IOException("Couldn't get the page: " + url + " (" + page.statusCode + ")");
+            }
+            // 404 is cached as offline (or not found) like a page without a live video
+            result.completedAt = System.currentTimeMillis();
+            result.future.complete(result.value);
+        } catch (IOException | RuntimeException exception) {
+            // Keep the validators of the last result for the next request
+            if (last != null) {
+                cache.replace(key, result, last);
+            } else {
+                cache.remove(key, result);
+            }
+            result.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Set time to keep the video id of a live channel. Default is DEFAULT_LIVE_TTL_MS.
+     * This also applies to results which are already cached.
+     *
+     * @param liveTtlMs Time in milli seconds
+     */
+    public void setLiveTtlMs(long liveTtlMs) {
+        this.liveTtlMs = liveTtlMs;
+    }
+
+    /**
+     * Set time to keep a channel which is not live streaming (and a handle which is not found).
+     * Default is DEFAULT_OFFLINE_TTL_MS.
+     *
+     * @param offlineTtlMs Time in milli seconds
+     */
+    public void setOfflineTtlMs(long offlineTtlMs) {
+        this.offlineTtlMs = offlineTtlMs;
+    }
+
+    /**
+     * Set time to keep the channel id of a handle. Default is DEFAULT_HANDLE_TTL_MS.
+     *
+     * @param handleTtlMs Time in milli seconds
+     */
+    public void setHandleTtlMs(long handleTtlMs) {
+        this.handleTtlMs = handleTtlMs;
+    }
+
+    /**
+     * Get number of cached channels and handles.
+     *
+     * @return Number of results
+     */
+    public int size() {
+        return this.liveVideos.size() + this.channelIds.size();
+    }
+
+    /**
+     * Remove all cached results. The next resolve() requests the pages without validators.
+     */
+    public void clear() {
+        this.liveVideos.clear();
+        this.channelIds.clear();
+    }
+
+    /**
+     * Stop the threads. Queued requests complete exceptionally.
+     */
+    @Override
+    public void close() {
+        if (this.isClosed) {
+            return;
+        }
+        this.isClosed = true;
+        this.executor.shutdownNow();
+        for (Map<String, Result> cache : Arrays.asList(this.liveVideos, this.channelIds)) {
+            for (Result result : cache.values()) {
+                result.future.completeExceptionally(new InterruptedIOException("The resolver was closed"));
+            }
+        }
+    }
+
+    private static final class Result {
+        private final CompletableFuture<String> future = new CompletableFuture<>();
+        private volatile String value;
+        private volatile long completedAt;
+        // Validators of the response
+        private volatile String etag;
+        private volatile String lastModified;
+    }
+}
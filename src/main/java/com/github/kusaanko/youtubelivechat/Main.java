@@ -30,10 +30,11 @@ public class Main {
                 liveStatusCheckCycle = 0;
             }
             try {
-                Thread.sleep(1000);
+                Thread.sleep(Math.max(0, chat.getNextPollDueMillis() - System.currentTimeMillis()));
             } catch (InterruptedException e) {
                 e.printStackTrace();
             }
         }
+        chat.close();
     }
 }
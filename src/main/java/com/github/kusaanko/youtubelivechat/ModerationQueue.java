@@ -0,0 +1,316 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Moderates many ChatItem of a YouTubeLiveChat asynchronously.
+ * Context menus of items are resolved concurrently, and moderation requests are sent within the rate budget
+ * while other items are still resolving their context menus.
+ * Each item has its own CompletableFuture, which completes with the item or with the error of the item.
+ * <p>
+ * TIMEOUT, BAN and UNBAN are done for the author of the item, so items of the same author queued at the same time
+ * share one request.
+ * You need to set user data using YouTubeLiveChat#setUserData() before using this.
+ */
+public class ModerationQueue implements AutoCloseable {
+    /**
+     * Moderation actions.
+     */
+    public enum Action {
+        /**
+         * Delete the message.
+         */
+        DELETE,
+        /**
+         * Timeout the author.
+         */
+        TIMEOUT,
+        /**
+         * Ban the author permanently.
+         */
+        BAN,
+        /**
+         * Unban the author.
+         */
+        UNBAN,
+        /**
+         * Pin the message as banner.
+         */
+        PIN
+    }
+
+    private final YouTubeLiveChat liveChat;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final Semaphore permits;
+    private final Queue<Task> queue;
+    // Running tasks of author actions by action and channel id
+    private final ConcurrentMap<String, CompletableFuture<ChatItem>> authorTasks;
+    private final long requestIntervalNanos;
+    private long nextRequestNanos;
+    private volatile boolean isClosed;
+
+    /**
+     * Initialize ModerationQueue with its own thread pool.
+     *
+     * @param liveChat             Chat to moderate
+     * @param maxConcurrency       Max number of items processed at the same time
+     * @param maxRequestsPerSecond Max number of moderation requests per second
+     */
+    public ModerationQueue(YouTubeLiveChat liveChat, int maxConcurrency, double maxRequestsPerSecond) {
+        this(liveChat, createExecutor(maxConcurrency), maxConcurrency, maxRequestsPerSecond, true);
+    }
+
+    /**
+     * Initialize ModerationQueue using an executor.
+     * The executor is not shut down by close().
+     *
+     * @param liveChat             Chat to moderate
+     * @param executor             Executor which sends requests
+     * @param maxConcurrency       Max number of items processed at the same time
+     * @param maxRequestsPerSecond Max number of moderation requests per second
+     */
+    public ModerationQueue(YouTubeLiveChat liveChat, Executor executor, int maxConcurrency,
+                           double maxRequestsPerSecond) {
+        this(liveChat, executor, maxConcurrency, maxRequestsPerSecond, false);
+    }
+
+    private ModerationQueue(YouTubeLiveChat liveChat, Executor executor, int maxConcurrency,
+                            double maxRequestsPerSecond, boolean ownsExecutor) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive!");
+        }
+        if (!(maxRequestsPerSecond > 0)) {
+            throw new IllegalArgumentException("maxRequestsPerSecond must be positive!");
+        }
+        this.liveChat = liveChat;
+        this.executor = executor;
+        this.ownedExecutor = ownsExecutor ? (ExecutorService) executor : null;
+        this.permits = new Semaphore(maxConcurrency);
+        this.queue = new ConcurrentLinkedQueue<>();
+        this.authorTasks = new ConcurrentHashMap<>();
+        this.requestIntervalNanos = (long) (1_000_000_000L / maxRequestsPerSecond);
+        this.nextRequestNanos = System.nanoTime();
+    }
+
+    private static ExecutorService createExecutor(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive!");
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newFixedThreadPool(maxConcurrency, runnable -> {
+            Thread thread = new Thread(runnable, "ModerationQueue-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queue an action.
+     *
+     * @param chatItem Target item
+     * @param action   Action
+     * @return Future which completes with the item when the action is done
+     * @throws IllegalStateException This queue is already closed
+     */
+    public CompletableFuture<ChatItem> submit(ChatItem chatItem, Action action) {
+        if (this.isClosed) {
+            throw new IllegalStateException("This queue is already closed!");
+        }
+        String authorKey = getAuthorKey(chatItem, action);
+        if (authorKey != null) {
+            CompletableFuture<ChatItem> future = new CompletableFuture<>();
+            CompletableFuture<ChatItem> running = this.authorTasks.putIfAbsent(authorKey, future);
+            if (running != null) {
+                // The author is already being moderated
+                return running.thenApply(item -> chatItem);
+            }
+            future.whenComplete((item, throwable) -> this.authorTasks.remove(authorKey, future));
+            this.enqueue(new Task(chatItem, action, future));
+            return future;
+        }
+        CompletableFuture<ChatItem> future = new CompletableFuture<>();
+        this.enqueue(new Task(chatItem, action, future));
+        return future;
+    }
+
+    /**
+     * Queue an action for all items.
+     *
+     * @param chatItems Target items
+     * @param action    Action
+     * @return Futures in the same order as the items
+     * @throws IllegalStateException This queue is already closed
+     */
+    public List<CompletableFuture<ChatItem>> submitAll(Collection<? extends ChatItem> chatItems, Action action) {
+        List<CompletableFuture<ChatItem>> futures = new ArrayList<>(chatItems.size());
+        for (ChatItem chatItem : chatItems) {
+            futures.add(this.submit(chatItem, action));
+        }
+        return futures;
+    }
+
+    /**
+     * Get number of items waiting to be processed.
+     *
+     * @return Number of items
+     */
+    public int getPendingCount() {
+        return this.queue.size();
+    }
+
+    /**
+     * Stop this. Waiting items are cancelled, and running items are not interrupted.
+     */
+    @Override
+    public void close() {
+        this.isClosed = true;
+        Task task;
+        while ((task = this.queue.poll()) != null) {
+            task.future.cancel(false);
+        }
+        if (this.ownedExecutor != null) {
+            this.ownedExecutor.shutdown();
+        }
+    }
+
+    private void enqueue(Task task) {
+        this.queue.add(task);
+        if (this.isClosed) {
+            // close() may have drained the queue before the task was added
+            if (this.queue.remove(task)) {
+                task.future.cancel(false);
+            }
+            return;
+        }
+        this.startWorkers();
+    }
+
+    private void startWorkers() {
+        while (!this.queue.isEmpty() && this.permits.tryAcquire()) {
+            try {
+                this.executor.execute(this::work);
+            } catch (RejectedExecutionException exception) {
+                this.permits.release();
+                Task task;
+                while ((task = this.queue.poll()) != null) {
+                    task.future.completeExceptionally(exception);
+                }
+            }
+        }
+    }
+
+    private void work() {
+        try {
+            Task task;
+            while (!this.isClosed && (task = this.queue.poll()) != null) {
+                this.run(task);
+            }
+        } finally {
+            this.permits.release();
+        }
+        // An item may be queued after this worker found the queue empty
+        if (!this.isClosed) {
+            this.startWorkers();
+        }
+    }
+
+    private void run(Task task) {
+        if (task.future.isDone()) {
+            return;
+        }
+        try {
+            ChatItem chatItem = task.chatItem;
+            if (getParams(chatItem, task.action) == null) {
+                this.liveChat.fetchContextMenu(chatItem);
+                if (getParams(chatItem, task.action) == null) {
+                    throw new IllegalStateException("Couldn't get params of " + task.action
+                            + "! Check if you have permission or use setUserData() first.");
+                }
+            }
+            this.waitForRequest();
+            switch (task.action) {
+                case DELETE:
+                    this.liveChat.deleteMessage(chatItem);
+                    break;
+                case TIMEOUT:
+                    this.liveChat.banAuthorTemporarily(chatItem);
+                    break;
+                case BAN:
+                    this.liveChat.banUserPermanently(chatItem);
+                    break;
+                case UNBAN:
+                    this.liveChat.unbanUser(chatItem);
+                    break;
+                case PIN:
+                    this.liveChat.pinMessage(chatItem);
+                    break;
+            }
+            task.future.complete(chatItem);
+        } catch (IOException | RuntimeException exception) {
+            task.future.completeExceptionally(exception);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            task.future.completeExceptionally(exception);
+        }
+    }
+
+    /**
+     * Wait until the next moderation request is allowed by the rate budget.
+     */
+    private void waitForRequest() throws InterruptedException {
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long slot = Math.max(now, this.nextRequestNanos);
+            this.nextRequestNanos = slot + this.requestIntervalNanos;
+            waitNanos = slot - now;
+        }
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private static String getParams(ChatItem chatItem, Action action) {
+        // contextMenuParams of a lazily decoded item is needed to find cached params
+        chatItem.decode();
+        switch (action) {
+            case DELETE:
+                return chatItem.chatDeleteParams;
+            case TIMEOUT:
+                return chatItem.timeBanParams;
+            case BAN:
+                return chatItem.userBanParams;
+            case UNBAN:
+                return chatItem.userUnbanParams;
+            default:
+                return chatItem.pinToTopParams;
+        }
+    }
+
+    private static String getAuthorKey(ChatItem chatItem, Action action) {
+        if (action != Action.TIMEOUT && action != Action.BAN && action != Action.UNBAN) {
+            return null;
+        }
+        String channelID = chatItem.getAuthorChannelID();
+        return channelID == null ? null : action + ":" + channelID;
+    }
+
+    private static final class Task {
+        private final ChatItem chatItem;
+        private final Action action;
+        private final CompletableFuture<ChatItem> future;
+
+        private Task(ChatItem chatItem, Action action, CompletableFuture<ChatItem> future) {
+            this.chatItem = chatItem;
+            this.action = action;
+            this.future = future;
+        }
+    }
+}
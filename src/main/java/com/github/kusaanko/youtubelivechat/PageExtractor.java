@@ -0,0 +1,214 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Extracts values from a html page while it is downloaded.
+ * The page is read once through a fixed size buffer, and reading stops as soon as all required fields are found
+ * (optional fields are searched a little longer). The whole page is never kept in memory.
+ */
+final class PageExtractor {
+    private static final int BUFFER_SIZE = 65536;
+    // Max length of a value
+    private static final int MAX_VALUE_LENGTH = 4096;
+    // Max distance between the prefix and the inner prefix of a field
+    private static final int INNER_WINDOW = 2048;
+    private static final int LOOKAHEAD = 8192;
+    // Optional fields are searched in this number of characters after all required fields are found
+    private static final int GRACE_CHARS = 262144;
+
+    private final List<Field> pending;
+    private final List<Field> required;
+    private final Map<String, String> values;
+
+    PageExtractor() {
+        this.pending = new ArrayList<>();
+        this.required = new ArrayList<>();
+        this.values = new HashMap<>();
+    }
+
+    /**
+     * Add a field to extract.
+     *
+     * @param field      Field
+     * @param isRequired If true, reading doesn't stop until this is found
+     * @return This
+     */
+    PageExtractor add(Field field, boolean isRequired) {
+        this.pending.add(field);
+        if (isRequired) {
+            this.required.add(field);
+        }
+        return this;
+    }
+
+    /**
+     * Get an extracted value.
+     *
+     * @param field Field
+     * @return Value, or null if not found
+     */
+    String get(Field field) {
+        return this.values.get(field.name);
+    }
+
+    /**
+     * Read the page and extract the fields. The reader is closed.
+     *
+     * @param reader Page
+     * @throws IOException Read error
+     */
+    void extract(Reader reader) throws IOException {
+        try (Reader in = reader) {
+            char[] buff = new char[BUFFER_SIZE];
+            int len = 0;
+            int pos = 0;
+            long offset = 0;
+            long requiredFoundAt = -1;
+            boolean isEOF = false;
+            while (!this.pending.isEmpty()) {
+                if (!isEOF && len - pos <= LOOKAHEAD) {
+                    System.arraycopy(buff, pos, buff, 0, len - pos);
+                    offset += pos;
+                    len -= pos;
+                    pos = 0;
+                    while (len < buff.length) {
+                        int n = in.read(buff, len, buff.length - len);
+                        if (n < 0) {
+                            isEOF = true;
+                            break;
+                        }
+                        len += n;
+                    }
+                }
+                int limit = isEOF ? len : len - LOOKAHEAD;
+                for (; pos < limit && !this.pending.isEmpty(); pos++) {
+                    if (buff[pos] != '"') {
+                        continue;
+                    }
+                    for (int i = 0; i < this.pending.size(); i++) {
+                        Field field = this.pending.get(i);
+                        String value = field.match(buff, pos, len);
+                        if (value != null) {
+                            this.values.put(field.name, value);
+                            this.pending.remove(i--);
+                            this.required.remove(field);
+                        }
+                    }
+                    if (requiredFoundAt < 0 && this.required.isEmpty()) {
+                        requiredFoundAt = offset + pos;
+                    }
+                }
+                if (isEOF || (requiredFoundAt >= 0 && offset + pos - requiredFoundAt > GRACE_CHARS)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * A value in a page, written like prefix[inner prefix]value(terminator)[suffix].
+     * Only the first match is used.
+     */
+    static final class Field {
+        private final String name;
+        private final String prefix;
+        private String innerPrefix;
+        private String terminators;
+        private String suffix;
+
+        private Field(String name, String prefix) {
+            this.name = name;
+            this.prefix = prefix;
+            this.terminators = "\"";
+        }
+
+        /**
+         * Create a field. The prefix must start with '"'.
+         *
+         * @param name   Name of the field
+         * @param prefix Text just before the value
+         * @return Field
+         */
+        static Field of(String name, String prefix) {
+            if (!prefix.startsWith("\"")) {
+                throw new IllegalArgumentException("prefix must start with '\"'");
+            }
+            return new Field(name, prefix);
+        }
+
+        /**
+         * The value starts after this text which appears shortly after the prefix.
+         */
+        Field inner(String innerPrefix) {
+            this.innerPrefix = innerPrefix;
+            return this;
+        }
+
+        /**
+         * The value ends at one of these characters. Default is '"'.
+         */
+        Field until(String terminators) {
+            this.terminators = terminators;
+            return this;
+        }
+
+        /**
+         * The value must be followed by this text, starting at the terminator.
+         */
+        Field suffix(String suffix) {
+            this.suffix = suffix;
+            return this;
+        }
+
+        private String match(char[] buff, int pos, int len) {
+            if (!regionMatches(buff, pos, len, this.prefix)) {
+                return null;
+            }
+            int start = pos + this.prefix.length();
+            if (this.innerPrefix != null) {
+                int end = Math.min(len, start + INNER_WINDOW);
+                int found = -1;
+                for (int i = start; i < end; i++) {
+                    if (regionMatches(buff, i, len, this.innerPrefix)) {
+                        found = i;
+                        break;
+                    }
+                }
+                if (found < 0) {
+                    return null;
+                }
+                start = found + this.innerPrefix.length();
+            }
+            int max = Math.min(len, start + MAX_VALUE_LENGTH);
+            int end = start;
+            while (end < max && this.terminators.indexOf(buff[end]) < 0) {
+                end++;
+            }
+            if (end >= max) {
+                return null;
+            }
+            if (this.suffix != null && !regionMatches(buff, end, len, this.suffix)) {
+                return null;
+            }
+            return new String(buff, start, end - start);
+        }
+
+        private static boolean regionMatches(char[] buff, int pos, int len, String text) {
+            if (pos + text.length() > len) {
+                return false;
+            }
+            for (int i = 0; i < text.length(); i++) {
+                if (buff[pos + i] != text.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
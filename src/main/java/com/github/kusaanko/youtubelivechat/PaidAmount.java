@@ -0,0 +1,154 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Amount of Super Chat or Super Sticker parsed from ChatItem#getPurchaseAmount(), such as "$5.00" or "￥1,000".
+ * Amounts are in micros (1/1000000) of the currency.
+ */
+public final class PaidAmount {
+    // Currency symbols used by YouTube, and ISO 4217 codes
+    private static final Map<String, String> CURRENCIES = new HashMap<>();
+
+    static {
+        String[] table = {
+                "$", "USD", "US$", "USD", "CA$", "CAD", "A$", "AUD", "NZ$", "NZD", "HK$", "HKD", "NT$", "TWD",
+                "MX$", "MXN", "R$", "BRL", "S$", "SGD", "¥", "JPY", "￥", "JPY", "JP¥", "JPY", "CN¥", "CNY",
+                "€", "EUR", "£", "GBP", "₹", "INR", "₩", "KRW", "₱", "PHP", "₪", "ILS", "₫", "VND", "฿", "THB",
+                "₽", "RUB", "₺", "TRY", "₴", "UAH", "zł", "PLN", "Kč", "CZK", "Ft", "HUF", "R", "ZAR",
+                "RM", "MYR", "Rp", "IDR", "CHF", "CHF", "kr", "SEK"
+        };
+        for (int i = 0; i < table.length; i += 2) {
+            CURRENCIES.put(table[i], table[i + 1]);
+        }
+    }
+
+    private final String currency;
+    private final long micros;
+
+    /**
+     * Initialize PaidAmount
+     *
+     * @param currency ISO 4217 currency code
+     * @param micros   Amount in micros
+     */
+    public PaidAmount(String currency, long micros) {
+        this.currency = currency;
+        this.micros = micros;
+    }
+
+    /**
+     * Parse an amount. The currency symbol can be before or after the number.
+     * If it is unknown three upper case letters, they are used as the currency code.
+     *
+     * @param purchaseAmount Amount text such as "$5.00"
+     * @return PaidAmount or null if the text can't be parsed
+     */
+    public static PaidAmount parse(String purchaseAmount) {
+        if (purchaseAmount == null) {
+            return null;
+        }
+        int start = -1;
+        int end = -1;
+        for (int i = 0; i < purchaseAmount.length(); i++) {
+            char c = purchaseAmount.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (start < 0) {
+                    start = i;
+                }
+                end = i + 1;
+            } else if (start >= 0 && c != ',' && c != '.' && c != ' ' && c != '\u00a0' && c != '\u202f') {
+                break;
+            }
+        }
+        if (start < 0) {
+            return null;
+        }
+        String symbol = purchaseAmount.substring(0, start).trim();
+        if (symbol.isEmpty()) {
+            symbol = purchaseAmount.substring(end).trim();
+        }
+        symbol = symbol.replace("\u00a0", "").replace("\u202f", "");
+        String currency = CURRENCIES.get(symbol);
+        if (currency == null) {
+            if (symbol.length() != 3 || !isUpperCase(symbol)) {
+                return null;
+            }
+            currency = symbol;
+        }
+        long micros = parseMicros(purchaseAmount, start, end);
+        return micros < 0 ? null : new PaidAmount(currency, micros);
+    }
+
+    /**
+     * Parse a number such as "1,000", "5.00" or "5,00". A separator followed by one or two digits at the end
+     * is the decimal separator, and other separators are grouping separators.
+     *
+     * @return Micros or -1 if the number is too large
+     */
+    private static long parseMicros(String text, int start, int end) {
+        int decimal = -1;
+        for (int i = end - 1; i >= start && i >= end - 3; i--) {
+            char c = text.charAt(i);
+            if (c == '.' || c == ',') {
+                decimal = i;
+                break;
+            }
+        }
+        long units = 0;
+        for (int i = start; i < (decimal >= 0 ? decimal : end); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                units = units * 10 + (c - '0');
+                if (units > Long.MAX_VALUE / 1_000_000 / 10) {
+                    return -1;
+                }
+            }
+        }
+        long micros = units * 1_000_000;
+        if (decimal >= 0) {
+            long scale = 100_000;
+            for (int i = decimal + 1; i < end; i++) {
+                micros += (text.charAt(i) - '0') * scale;
+                scale /= 10;
+            }
+        }
+        return micros;
+    }
+
+    private static boolean isUpperCase(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) < 'A' || text.charAt(i) > 'Z') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get currency.
+     *
+     * @return ISO 4217 currency code (for example USD)
+     */
+    public String getCurrency() {
+        return this.currency;
+    }
+
+    /**
+     * Get amount in micros of the currency.
+     *
+     * @return Amount in micros
+     */
+    public long getMicros() {
+        return this.micros;
+    }
+
+    @Override
+    public String toString() {
+        return "PaidAmount{" +
+                "currency='" + currency + '\'' +
+                ", micros=" + micros +
+                '}';
+    }
+}
@@ -0,0 +1,92 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.util.Arrays;
+
+/**
+ * Set of recently seen ids with a fixed memory footprint.
+ * Ids are stored as 64 bit hashes in two generations of open addressing tables.
+ * When the current generation is full, the previous one is dropped,
+ * so this remembers at least the last capacity / 2 ids and at most the last capacity ids.
+ */
+final class RecentIdSet {
+    private final int generationCapacity;
+    private final int mask;
+    private long[] current;
+    private long[] previous;
+    private int currentSize;
+
+    /**
+     * @param capacity Max number of remembered ids
+     */
+    RecentIdSet(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("capacity must be 2 or more!");
+        }
+        this.generationCapacity = capacity / 2;
+        // Keep load factor 0.5 or less
+        int tableSize = Integer.highestOneBit(this.generationCapacity * 2 - 1) << 1;
+        this.mask = tableSize - 1;
+        this.current = new long[tableSize];
+        this.previous = new long[tableSize];
+    }
+
+    /**
+     * Add an id.
+     *
+     * @param id Id
+     * @return If the id was not seen recently, returns true.
+     */
+    boolean add(String id) {
+        long hash = hash(id);
+        if (this.contains(this.current, hash) || this.contains(this.previous, hash)) {
+            return false;
+        }
+        if (this.currentSize >= this.generationCapacity) {
+            long[] table = this.previous;
+            Arrays.fill(table, 0);
+            this.previous = this.current;
+            this.current = table;
+            this.currentSize = 0;
+        }
+        int i = (int) hash & this.mask;
+        while (this.current[i] != 0) {
+            i = (i + 1) & this.mask;
+        }
+        this.current[i] = hash;
+        this.currentSize++;
+        return true;
+    }
+
+    void clear() {
+        Arrays.fill(this.current, 0);
+        Arrays.fill(this.previous, 0);
+        this.currentSize = 0;
+    }
+
+    private boolean contains(long[] table, long hash) {
+        int i = (int) hash & this.mask;
+        long value;
+        while ((value = table[i]) != 0) {
+            if (value == hash) {
+                return true;
+            }
+            i = (i + 1) & this.mask;
+        }
+        return false;
+    }
+
+    /**
+     * 64 bit FNV-1a with a final mix. Never returns 0 because 0 means an empty slot.
+     */
+    private static long hash(String id) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            hash ^= id.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        return hash == 0 ? 1 : hash;
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.kusaanko.youtubelivechat;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Downloads all chat of a replay as fast as possible.
+ * Continuations are requested back to back with the position of the latest received item,
+ * so this doesn't wait for the video to be played.
+ * <p>
+ * Each request overlaps the last one by a few seconds, and the overlapping items are dropped by deduplication
+ * of YouTubeLiveChat. Don't disable it, and keep its capacity larger than the number of items in 5 seconds.
+ */
+public class ReplayArchiver {
+    // Request a little before the latest item so that items are not missed. Duplicates are dropped.
+    private static final long OVERLAP_MS = 5000;
+
+    private final YouTubeLiveChat liveChat;
+    private long minRequestIntervalMs;
+    private int maxRetries;
+    private long retryDelayMs;
+
+    /**
+     * Initialize ReplayArchiver
+     *
+     * @param liveChat Chat of replay
+     * @throws IllegalArgumentException The chat is not replay
+     */
+    public ReplayArchiver(YouTubeLiveChat liveChat) {
+        if (!liveChat.isReplay()) {
+            throw new IllegalArgumentException("This live is not replay!");
+        }
+        this.liveChat = liveChat;
+        this.minRequestIntervalMs = 0;
+        this.maxRetries = 5;
+        this.retryDelayMs = 1000;
+    }
+
+    /**
+     * Set min interval between requests to follow rate limits. Default is 0.
+     *
+     * @param minRequestIntervalMs Interval in milli seconds
+     */
+    public void setMinRequestIntervalMs(long minRequestIntervalMs) {
+        if (minRequestIntervalMs < 0) {
+            throw new IllegalArgumentException("minRequestIntervalMs must not be negative!");
+        }
+        this.minRequestIntervalMs = minRequestIntervalMs;
+    }
+
+    /**
+     * Set how many times a failed request is retried. The delay is doubled on each retry.
+     * Default is 5 times from 1000 ms.
+     *
+     * @param maxRetries   Max number of retries
+     * @param retryDelayMs Delay before the first retry in milli seconds
+     */
+    public void setRetry(int maxRetries, long retryDelayMs) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("maxRetries must not be negative!");
+        }
+        if (retryDelayMs < 0) {
+            throw new IllegalArgumentException("retryDelayMs must not be negative!");
+        }
+        this.maxRetries = maxRetries;
+        this.retryDelayMs = retryDelayMs;
+    }
+
+    /**
+     * Download all remaining chat of the replay.
+     * Items are passed to the sink while they are parsed.
+     *
+     * @param sink Listener which receives items
+     * @return Number of requests
+     * @throws IOException Http request error after retries
+     * @throws IllegalStateException Deduplication of the chat is disabled
+     */
+    public int archive(ChatListener sink) throws IOException {
+        if (!this.liveChat.isDeduplicationEnabled()) {
+            throw new IllegalStateException("Deduplication is disabled! ReplayArchiver needs it to drop overlapping items.");
+        }
+        this.liveChat.addListener(sink);
+        try {
+            int requests = 0;
+            long lastRequest = 0;
+            while (!this.liveChat.isReplayFinished()) {
+                long wait = lastRequest + this.minRequestIntervalMs - System.currentTimeMillis();
+                if (wait > 0) {
+                    sleep(wait);
+                }
+                lastRequest = System.currentTimeMillis();
+                this.update();
+                requests++;
+            }
+            return requests;
+        } finally {
+            this.liveChat.removeListener(sink);
+        }
+    }
+
+    private void update() throws IOException {
+        long delay = this.retryDelayMs;
+        for (int retry = 0; ; retry++) {
+            try {
+                this.liveChat.update(Math.max(0, this.liveChat.getReplayOffsetMs() - OVERLAP_MS));
+                return;
+            } catch (IOException exception) {
+                if (retry >= this.maxRetries) {
+                    throw exception;
+                }
+                sleep(delay);
+                delay *= 2;
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Archiving was interrupted");
+        }
+    }
+}
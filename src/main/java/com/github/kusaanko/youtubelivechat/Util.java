@@ -2,15 +2,27 @@ package com.github.kusaanko.youtubelivechat;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.stream.JsonReader;
 
 import java.io.*;
 import java.net.HttpURLConnection;
-import java.net.URL;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
 
 @SuppressWarnings("unchecked")
 public class Util {
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
     private static Gson gson;
 
     static {
@@ -21,9 +33,11 @@ public class Util {
         StringBuilder js = new StringBuilder();
         js.append("{");
         for (String key : json.keySet()) {
-            js.append("'").append(key).append("': ");
+            appendJSONString(js, key).append(": ");
             Object d = json.get(key);
-            if (d instanceof Byte ||
+            if (d == null) {
+                js.append("null");
+            } else if (d instanceof Byte ||
                     d instanceof Character ||
                     d instanceof Short ||
                     d instanceof Integer ||
@@ -35,11 +49,47 @@ public class Util {
             } else if (d instanceof Map) {
                 js.append(toJSON((Map<String, Object>) d));
             } else {
-                js.append("\"").append(d.toString().replace("\"", "\\\"").replace("\\", "\\\\")).append("\"");
+                appendJSONString(js, d.toString());
             }
             js.append(", ");
         }
-        return js.substring(0, js.length() - 2) + "}";
+        if (json.isEmpty()) {
+            return "{}";
+        }
+        js.setLength(js.length() - 2);
+        return js.append("}").toString();
+    }
+
+    private static StringBuilder appendJSONString(StringBuilder js, String value) {
+        js.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    js.append("\\\"");
+                    break;
+                case '\\':
+                    js.append("\\\\");
+                    break;
+                case '\n':
+                    js.append("\\n");
+                    break;
+                case '\r':
+                    js.append("\\r");
+                    break;
+                case '\t':
+                    js.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        js.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        js.append(c);
+                    }
+                    break;
+            }
+        }
+        return js.append('"');
     }
 
     public static Map<String, Object> toJSON(String json) {
@@ -129,28 +179,49 @@ public class Util {
         return (int) getJSONValueLong(json, key);
     }
 
-    public static String getPageContent(String url, Map<String, String> header) throws IOException {
-        URL u = new URL(url);
-        HttpURLConnection connection = (HttpURLConnection) u.openConnection();
-        putRequestHeader(header);
-        for (String key : header.keySet()) {
-            connection.setRequestProperty(key, header.get(key));
+    /**
+     * HttpClient shared by all requests, which is created when the first request is sent.
+     * Connections are kept alive and multiplexed over HTTP/2 for the life of the process.
+     * Its threads are daemon threads and stop when they are idle.
+     */
+    private static final class HttpClientHolder {
+        private static final HttpClient httpClient = createHttpClient();
+
+        private static HttpClient createHttpClient() {
+            AtomicInteger count = new AtomicInteger();
+            return HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_2)
+                    .followRedirects(HttpClient.Redirect.NORMAL)
+                    .connectTimeout(CONNECT_TIMEOUT)
+                    .executor(Executors.newCachedThreadPool(runnable -> {
+                        Thread thread = new Thread(runnable, "YouTubeLiveChat-http-" + count.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }))
+                    .build();
         }
-        connection.connect();
-        try {
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) { // success
-                InputStream inputStream = connection.getInputStream();
-                byte[] buff = new byte[8192];
-                int len;
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                while ((len = inputStream.read(buff)) != -1) {
-                    baos.write(buff, 0, len);
-                }
-                inputStream.close();
-                String content = baos.toString(StandardCharsets.UTF_8.toString());
-                baos.close();
-                return content;
+    }
+
+    public static String getPageContent(String url, Map<String, String> header) throws IOException {
+        return getPageContent(url, header, null, null);
+    }
+
+    /**
+     * Get a page and record the request to metrics.
+     *
+     * @param url      URL
+     * @param header   Request header
+     * @param metrics  ChatMetrics, or null
+     * @param endpoint Endpoint recorded to metrics
+     * @return Response body, or null if the response code is not 200
+     * @throws IOException Http request error
+     */
+    static String getPageContent(String url, Map<String, String> header, ChatMetrics metrics,
+                                 ChatMetrics.Endpoint endpoint) throws IOException {
+        HttpResponse<InputStream> response = send(newRequest(url).GET(), header, metrics, endpoint);
+        try (InputStream inputStream = getBody(response, metrics, endpoint)) {
+            if (response.statusCode() == HttpURLConnection.HTTP_OK) { // success
+                return readString(inputStream);
             }
         } catch (IOException exception) {
             throw new IOException("Error during http request ", exception);
@@ -158,77 +229,361 @@ public class Util {
         return null;
     }
 
+    /**
+     * Open a page. The caller must close the returned Reader.
+     * Closing it before the end stops downloading the rest of the page.
+     *
+     * @param url    URL
+     * @param header Request header
+     * @return Response body, or null if the response code is not 200
+     * @throws IOException Http request error
+     */
+    static Reader getPageReader(String url, Map<String, String> header) throws IOException {
+        return getPageReader(url, header, null, null);
+    }
+
+    /**
+     * Open a page and record the request to metrics. The caller must close the returned Reader.
+     *
+     * @param url      URL
+     * @param header   Request header
+     * @param metrics  ChatMetrics, or null
+     * @param endpoint Endpoint recorded to metrics
+     * @return Response body, or null if the response code is not 200
+     * @throws IOException Http request error
+     */
+    static Reader getPageReader(String url, Map<String, String> header, ChatMetrics metrics,
+                                ChatMetrics.Endpoint endpoint) throws IOException {
+        HttpResponse<InputStream> response = send(newRequest(url).GET(), header, metrics, endpoint);
+        InputStream inputStream = getBody(response, metrics, endpoint);
+        if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+            inputStream.close();
+            return null;
+        }
+        return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open a page unless it is not modified since the last response.
+     * The validators of the last response are sent as If-None-Match and If-Modified-Since.
+     * The caller must close the reader of the returned page.
+     *
+     * @param url          URL
+     * @param header       Request header
+     * @param etag         ETag of the last response, or null
+     * @param lastModified Last-Modified of the last response, or null
+     * @return Page
+     * @throws IOException Http request error
+     */
+    static ConditionalPage getPageIfModified(String url, Map<String, String> header, String etag,
+                                             String lastModified) throws IOException {
+        HttpRequest.Builder request = newRequest(url).GET();
+        if (etag != null) {
+            request.setHeader("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.setHeader("If-Modified-Since", lastModified);
+        }
+        HttpResponse<InputStream> response = send(request, header, null, null);
+        InputStream inputStream = getBody(response, null, null);
+        Reader reader = null;
+        if (response.statusCode() == HttpURLConnection.HTTP_OK) {
+            reader = new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+        } else {
+            inputStream.close();
+        }
+        return new ConditionalPage(response.statusCode(), response.headers().firstValue("ETag").orElse(null),
+                response.headers().firstValue("Last-Modified").orElse(null), reader);
+    }
+
+    /**
+     * Response of getPageIfModified().
+     */
+    static final class ConditionalPage {
+        final int statusCode;
+        // Validators sent with the next request
+        final String etag;
+        final String lastModified;
+        // Body, or null if the response code is not 200
+        final Reader reader;
+
+        private ConditionalPage(int statusCode, String etag, String lastModified, Reader reader) {
+            this.statusCode = statusCode;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.reader = reader;
+        }
+
+        boolean isNotModified() {
+            return this.statusCode == HttpURLConnection.HTTP_NOT_MODIFIED;
+        }
+    }
+
     public static String getPageContentWithJson(String url, String data, Map<String, String> header)
             throws IOException {
-        URL u = new URL(url);
-        HttpURLConnection connection = (HttpURLConnection) u.openConnection();
-        putRequestHeader(header);
-        header.put("Content-Type", "application/json");
-        header.put("Content-Length", String.valueOf(data.length()));
-        for (String key : header.keySet()) {
-            connection.setRequestProperty(key, header.get(key));
-        }
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8);
-        writer.write(data);
-        writer.close();
-        connection.connect();
+        return getPageContentWithJson(url, data, header, null, null);
+    }
+
+    static String getPageContentWithJson(String url, String data, Map<String, String> header, ChatMetrics metrics,
+                                         ChatMetrics.Endpoint endpoint) throws IOException {
+        try (Reader reader = getPageReaderWithJson(url, data, header, metrics, endpoint)) {
+            return readString(reader);
+        }
+    }
+
+    /**
+     * Post json and open the response body.
+     * The caller must close the returned Reader.
+     *
+     * @param url    URL
+     * @param data   Request body
+     * @param header Request header
+     * @return Response body
+     * @throws IOException Http request error
+     */
+    static Reader getPageReaderWithJson(String url, String data, Map<String, String> header) throws IOException {
+        return getPageReaderWithJson(url, data, header, null, null);
+    }
+
+    /**
+     * Post json, open the response body and record the request to metrics.
+     * The caller must close the returned Reader.
+     *
+     * @param url      URL
+     * @param data     Request body
+     * @param header   Request header
+     * @param metrics  ChatMetrics, or null
+     * @param endpoint Endpoint recorded to metrics
+     * @return Response body
+     * @throws IOException Http request error
+     */
+    static Reader getPageReaderWithJson(String url, String data, Map<String, String> header, ChatMetrics metrics,
+                                        ChatMetrics.Endpoint endpoint) throws IOException {
+        return getPageReaderWithJson(newJsonRequest(url, data), header, metrics, endpoint);
+    }
+
+    /**
+     * Post json written in a JsonBuffer, open the response body and record the request to metrics.
+     * The caller must close the returned Reader. The buffer must not be changed until the Reader is closed.
+     *
+     * @param url      URL
+     * @param data     Request body
+     * @param header   Request header
+     * @param metrics  ChatMetrics, or null
+     * @param endpoint Endpoint recorded to metrics
+     * @return Response body
+     * @throws IOException Http request error
+     */
+    static Reader getPageReaderWithJson(String url, JsonBuffer data, Map<String, String> header, ChatMetrics metrics,
+                                        ChatMetrics.Endpoint endpoint) throws IOException {
+        return getPageReaderWithJson(newRequest(url)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(data.getBuffer(), 0, data.length())),
+                header, metrics, endpoint);
+    }
+
+    private static Reader getPageReaderWithJson(HttpRequest.Builder request, Map<String, String> header,
+                                                ChatMetrics metrics, ChatMetrics.Endpoint endpoint)
+            throws IOException {
+        HttpResponse<InputStream> response = send(request, header, metrics, endpoint);
+        InputStream inputStream = getBody(response, metrics, endpoint);
+        int responseCode = response.statusCode();
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            inputStream.close();
+            throw new IOException("Error during http request ", new HttpStatusException(responseCode));
+        }
+        return new InputStreamReader(inputStream, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get the response code of an error thrown by http requests.
+     *
+     * @param exception Error
+     * @return Response code, or -1 if the error is not caused by a response code
+     */
+    static int getStatusCode(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HttpStatusException) {
+                return ((HttpStatusException) cause).statusCode;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Response code which is not 200.
+     */
+    static final class HttpStatusException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private final int statusCode;
+
+        private HttpStatusException(int statusCode) {
+            super("HTTP error code: " + statusCode);
+            this.statusCode = statusCode;
+        }
+    }
+
+    public static void sendHttpRequestWithJson(String url, String data, Map<String, String> header) throws IOException {
+        sendHttpRequestWithJson(url, data, header, null, null);
+    }
+
+    static void sendHttpRequestWithJson(String url, String data, Map<String, String> header, ChatMetrics metrics,
+                                        ChatMetrics.Endpoint endpoint) throws IOException {
+        HttpResponse<InputStream> response = send(newJsonRequest(url, data), header, metrics, endpoint);
+        try (InputStream inputStream = getBody(response, metrics, endpoint)) {
+            String content = readString(inputStream);
+            if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                throw new IOException(content, new HttpStatusException(response.statusCode()));
+            }
+        }
+    }
+
+    private static HttpRequest.Builder newRequest(String url) throws IOException {
+        try {
+            return HttpRequest.newBuilder(URI.create(url)).timeout(REQUEST_TIMEOUT);
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid url: " + url, exception);
+        }
+    }
+
+    private static HttpRequest.Builder newJsonRequest(String url, String data) throws IOException {
+        return newRequest(url)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(data, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send a request. If metrics is not null, the time until the response header arrives and errors are recorded.
+     * The shared HttpClient is retained until the body returned by getBody() is closed,
+     * so it is not shut down while static methods use it.
+     */
+    private static HttpResponse<InputStream> send(HttpRequest.Builder request, Map<String, String> header,
+                                                  ChatMetrics metrics, ChatMetrics.Endpoint endpoint)
+            throws IOException {
         try {
-            int responseCode = connection.getResponseCode();
-            if (responseCode == HttpURLConnection.HTTP_OK) { // success
-                InputStream inputStream = connection.getInputStream();
-                byte[] buff = new byte[8192];
-                int len;
-                ByteArrayOutputStream baos = new ByteArrayOutputStream();
-                while ((len = inputStream.read(buff)) != -1) {
-                    baos.write(buff, 0, len);
+            for (Map.Entry<String, String> entry : header.entrySet()) {
+                request.setHeader(entry.getKey(), entry.getValue());
+            }
+            // Set after the given header to keep these values. The header may be shared, so it is not modified.
+            putRequestHeader(request);
+            long start = System.nanoTime();
+            HttpResponse<InputStream> response = HttpClientHolder.httpClient.send(request.build(),
+                    HttpResponse.BodyHandlers.ofInputStream());
+            if (metrics != null) {
+                metrics.recordRequest(endpoint, System.nanoTime() - start);
+                if (response.statusCode() != HttpURLConnection.HTTP_OK) {
+                    metrics.recordError(ChatMetrics.ErrorCause.HTTP_STATUS);
                 }
-                inputStream.close();
-                String content = baos.toString(StandardCharsets.UTF_8.toString());
-                baos.close();
-                return content;
-            } else {
-                throw new IOException("HTTP error code: " + responseCode);
             }
+            return response;
+        } catch (IllegalArgumentException exception) {
+            throw new IOException("Invalid request header", exception);
         } catch (IOException exception) {
-            throw new IOException("Error during http request ", exception);
+            if (metrics != null) {
+                metrics.recordError(ChatMetrics.causeOf(exception));
+            }
+            throw exception;
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Http request was interrupted");
         }
     }
 
-    public static void sendHttpRequestWithJson(String url, String data, Map<String, String> header) throws IOException {
-        URL u = new URL(url);
-        HttpURLConnection connection = (HttpURLConnection) u.openConnection();
-        putRequestHeader(header);
-        header.put("Content-Type", "application/json");
-        header.put("Content-Length", String.valueOf(data.length()));
-        for (String key : header.keySet()) {
-            connection.setRequestProperty(key, header.get(key));
-        }
-        connection.setRequestMethod("POST");
-        connection.setDoOutput(true);
-        OutputStreamWriter writer = new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8);
-        writer.write(data);
-        writer.close();
-        connection.connect();
+    /**
+     * Get the response body decoded according to Content-Encoding.
+     * If metrics is not null, received bytes are recorded when the body is closed.
+     */
+    private static InputStream getBody(HttpResponse<InputStream> response, ChatMetrics metrics,
+                                       ChatMetrics.Endpoint endpoint) throws IOException {
+        InputStream body = response.body();
+        if (metrics != null) {
+            body = new CountingInputStream(body, metrics, endpoint);
+        }
+        String encoding = response.headers().firstValue("Content-Encoding").orElse("").trim().toLowerCase();
         try {
-            connection.getInputStream();
-            connection.disconnect();
-        } catch (IOException e) {
-            BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getErrorStream()));
-            String s;
-            StringBuilder str = new StringBuilder();
-            while ((s = reader.readLine()) != null) {
-                str.append(s);
+            switch (encoding) {
+                case "gzip":
+                    return new GZIPInputStream(body, 8192);
+                case "deflate":
+                    return new InflaterInputStream(body);
+                default:
+                    return body;
             }
-            connection.disconnect();
-            throw new IOException(str.toString(), e);
+        } catch (IOException exception) {
+            body.close();
+            throw exception;
+        }
+    }
+
+    /**
+     * Counts bytes read from a response body and records them to ChatMetrics when closed.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private final ChatMetrics metrics;
+        private final ChatMetrics.Endpoint endpoint;
+        private long count;
+        private boolean isClosed;
+
+        private CountingInputStream(InputStream in, ChatMetrics metrics, ChatMetrics.Endpoint endpoint) {
+            super(in);
+            this.metrics = metrics;
+            this.endpoint = endpoint;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                this.count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                this.count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!this.isClosed) {
+                this.isClosed = true;
+                this.metrics.recordResponseBytes(this.endpoint, this.count);
+            }
+            super.close();
         }
     }
 
-    private static void putRequestHeader(Map<String, String> header) {
-        header.put("Accept-Charset", "utf-8");
-        header.put("User-Agent", YouTubeLiveChat.userAgent);
+    private static String readString(InputStream inputStream) throws IOException {
+        return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+    }
+
+    private static String readString(Reader reader) throws IOException {
+        StringBuilder content = new StringBuilder();
+        char[] buff = new char[8192];
+        int len;
+        while ((len = reader.read(buff)) != -1) {
+            content.append(buff, 0, len);
+        }
+        return content.toString();
+    }
+
+    private static void putRequestHeader(HttpRequest.Builder request) {
+        request.setHeader("Accept-Charset", "utf-8");
+        request.setHeader("Accept-Encoding", "gzip, deflate");
+        request.setHeader("User-Agent", YouTubeLiveChat.userAgent);
     }
 
     public static String generateClientMessageId() {
@@ -243,6 +598,44 @@ public class Util {
         return sb.toString();
     }
 
+    /**
+     * Read json until the name is found at any depth, without building a tree.
+     * If found, the reader is positioned at the value of the name.
+     *
+     * @param reader JsonReader
+     * @param name   Name to find
+     * @return If found, returns true.
+     * @throws IOException Read error or malformed json
+     */
+    static boolean findJsonName(JsonReader reader, String name) throws IOException {
+        while (true) {
+            switch (reader.peek()) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    break;
+                case NAME:
+                    if (reader.nextName().equals(name)) {
+                        return true;
+                    }
+                    break;
+                case END_DOCUMENT:
+                    return false;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+    }
+
     public static JsonElement searchJsonElementByKey(String key, JsonElement jsonElement) {
 
         JsonElement value = null;
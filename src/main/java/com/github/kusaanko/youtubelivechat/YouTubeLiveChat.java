@@ -1,40 +1,114 @@
 package com.github.kusaanko.youtubelivechat;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParser;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
 
 import java.io.IOException;
-import java.math.BigInteger;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("unchecked")
-public class YouTubeLiveChat {
+public class YouTubeLiveChat implements AutoCloseable {
     /**
      * This is user agent used by YouTubeLiveChat.
      * You can edit this.
      */
     public static String userAgent = "Mozilla/5.0 (Macintosh; Intel Mac OS X 10_15_7) AppleWebKit/605.1.15 (KHTML, like Gecko) Version/26.1 Safari/605.1.15";
 
+    /**
+     * This is base url of www.youtube.com used by YouTubeLiveChat.
+     * You can edit this to use a server for testing like FakeYouTubeServer.
+     * YouTubeLiveChat created after editing this use the new url.
+     */
+    public static String youtubeURL = "https://www.youtube.com";
+    /**
+     * This is base url of studio.youtube.com used by YouTubeLiveChat for moderation.
+     * You can edit this to use a server for testing like FakeYouTubeServer.
+     * YouTubeLiveChat created after editing this use the new url.
+     */
+    public static String studioURL = "https://studio.youtube.com";
+    /**
+     * This is how long the result of getBroadcastInfo() is reused for the same video, in milli seconds.
+     * Calls for the same video at the same time share one request even if this is 0.
+     * You can edit this.
+     */
+    public static long broadcastInfoCacheMs = 5000;
+
+    private final String baseURL;
     // view live chat
-    private static final String liveChatApi = "https://www.youtube.com/youtubei/v1/live_chat/get_live_chat?key=";
+    private final String liveChatApi;
     // view chat replay
-    private static final String liveChatReplayApi = "https://www.youtube.com/youtubei/v1/live_chat/get_live_chat_replay?key=";
+    private final String liveChatReplayApi;
     // send chat
-    private static final String liveChatSendMessageApi = "https://www.youtube.com/youtubei/v1/live_chat/send_message?key=";
+    private final String liveChatSendMessageApi;
     // get chat item menu
-    private static final String liveChatContextMenuApi = "https://www.youtube.com/youtubei/v1/live_chat/get_item_context_menu?key=";
+    private final String liveChatContextMenuApi;
     // moderation (delete, ban, unban)
-    private static final String liveChatModerateApi = "https://studio.youtube.com/youtubei/v1/live_chat/moderate?key=";
+    private final String liveChatModerateApi;
     // tools (pin)
-    private static final String liveChatActionApi = "https://studio.youtube.com/youtubei/v1/live_chat/live_chat_action?key=";
+    private final String liveChatActionApi;
     // stream info
-    private static final String liveStreamInfoApi = "https://www.youtube.com/watch?v=";
+    private final String liveStreamInfoApi;
+
+    // Results and running requests of getBroadcastInfo() by the url of the watch page (so by server and video id)
+    private static final ConcurrentMap<String, BroadcastInfo> broadcastInfos = new ConcurrentHashMap<>();
+    // broadcastInfos is cleaned up when it has more entries than this
+    private static final int BROADCAST_INFO_CLEANUP_SIZE = 1024;
+
+    private static final String ORIGIN = "https://www.youtube.com";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    // MessageDigest is not thread-safe
+    private static final ThreadLocal<MessageDigest> sha1 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("SHA-1 is not available!", exception);
+        }
+    });
+
+    // Values in watch page and live_chat page
+    private static final PageExtractor.Field CHANNEL_ID = PageExtractor.Field.of("channelId", "\"channelId\":\"")
+            .suffix("\",\"isOwnerViewing\"");
+    private static final PageExtractor.Field UPDATED_VIDEO_ID = PageExtractor.Field.of("videoId",
+            "\"updatedMetadataEndpoint\":{\"videoId\":\"");
+    private static final PageExtractor.Field IS_REPLAY = PageExtractor.Field.of("isReplay", "\"isReplay\":")
+            .until(",}");
+    private static final PageExtractor.Field TOP_ONLY_CONTINUATION = PageExtractor.Field.of("topOnlyContinuation",
+            "\"selected\":true,\"continuation\":{\"reloadContinuationData\":{\"continuation\":\"");
+    private static final PageExtractor.Field ALL_CONTINUATION = PageExtractor.Field.of("allContinuation",
+            "\"selected\":false,\"continuation\":{\"reloadContinuationData\":{\"continuation\":\"");
+    private static final PageExtractor.Field INNERTUBE_API_KEY = PageExtractor.Field.of("innertubeApiKey",
+            "\"innertubeApiKey\":\"");
+    private static final PageExtractor.Field DATASYNC_ID = PageExtractor.Field.of("datasyncId", "\"datasyncId\":\"")
+            .until("|\"").suffix("||");
+    private static final PageExtractor.Field LIVE_CHAT_CONTINUATION = PageExtractor.Field.of("continuation",
+            "\"invalidationContinuationData\":{").inner("\"continuation\":\"");
+    private static final PageExtractor.Field SEND_MESSAGE_PARAMS = PageExtractor.Field.of("params",
+            "\"sendLiveChatMessageEndpoint\":{").inner("\"params\":\"");
+    // Values in the head of a channel page
+    private static final PageExtractor.Field CANONICAL_URL = PageExtractor.Field.of("canonical",
+            "\"canonical\" href=\"");
+    private static final PageExtractor.Field CHANNEL_IDENTIFIER = PageExtractor.Field.of("identifier",
+            "\"identifier\" content=\"");
+
+    /**
+     * Default poll interval in milli seconds.
+     */
+    public static final long DEFAULT_POLL_INTERVAL_MS = 1000;
+    /**
+     * Default number of ids remembered to drop duplicated items.
+     */
+    public static final int DEFAULT_DEDUPLICATION_CAPACITY = 2048;
+    // Poll interval is shortened to get about this number of items per update
+    private static final int TARGET_ITEMS_PER_POLL = 30;
 
     private String videoId;
     private String channelId;
@@ -47,17 +121,48 @@ public class YouTubeLiveChat {
     private final ArrayList<ChatItem> chatItems;
     private final ArrayList<ChatItem> chatItemTickerPaidMessages;
     private final ArrayList<ChatItemDelete> chatItemDeletes;
+    private final List<ChatListener> listeners;
+    private final ChatListener dispatcher;
+    private boolean isChatItemListEnabled;
+    private RecentIdSet recentIds;
+    private AuthorRegistry authorRegistry;
+    private EmojiRegistry customEmojiRegistry;
+    private boolean isLazyDecoding;
+    private ChatMetrics metrics;
+    private volatile ContextMenuCache contextMenuCache;
+    // Request body of get_live_chat reused by every update()
+    private final JsonBuffer pollPayload;
+    private byte[] pollPayloadTemplate;
+    private String pollPayloadVisitorData;
+    private String pollPayloadClientVersion;
+    private String pollPayloadUserAgent;
+    private Locale pollPayloadLocale;
+    // Used by moderation and prefetch threads too
+    private volatile UserContext userContext;
     private Locale locale;
-    private String clientVersion;
+    // Read by fetchContextMenu() on prefetch and moderation threads
+    private volatile String clientVersion;
     private boolean isInitDataAvailable;
-    private String apiKey;
-    private String datasyncId;
-    private int commentCounter;
+    private volatile String apiKey;
+    private volatile String datasyncId;
+    private final AtomicInteger commentCounter;
     private String clientMessageId;
     private String params;
     private Map<String, String> cookie;
+    private boolean isClosed;
+    private long replayOffsetMs;
+    // Initialized from a session and no response has been received yet
+    private boolean isRestored;
+    private long minPollIntervalMs;
+    private long maxPollIntervalMs;
+    private long pollIntervalMs;
+    private long nextPollDueMillis;
+    private long lastPollMillis;
+    // Items per milli second
+    private double itemRate;
 
-    private MessageDigest sha1;
+    private String cookieHeader;
+    private volatile AuthHeader authHeader;
     private final Gson gson;
 
     /**
@@ -70,25 +175,88 @@ public class YouTubeLiveChat {
      * @throws IllegalArgumentException Video id is incorrect
      */
     public YouTubeLiveChat(String id, boolean isTopChatOnly, IdType type) throws IOException {
-        this.isTopChatOnly = isTopChatOnly;
-        this.visitorData = "";
-        this.chatItems = new ArrayList<>();
-        this.chatItemTickerPaidMessages = new ArrayList<>();
-        this.chatItemDeletes = new ArrayList<>();
-        this.locale = Locale.US;
-        this.commentCounter = 0;
-        this.clientMessageId = Util.generateClientMessageId();
-        this.gson = new Gson();
+        this(isTopChatOnly);
         try {
             this.getInitialData(id, type);
         } catch (IOException exception) {
+            this.close();
             throw new IOException(exception.getLocalizedMessage());
+        } catch (RuntimeException exception) {
+            this.close();
+            throw exception;
         }
         if (this.continuation == null) {
+            this.close();
             throw new IllegalArgumentException("Invalid " + type.toString().toLowerCase() + " id:" + id);
         }
     }
 
+    /**
+     * Initialize YouTubeLiveChat from a session saved by getSession().
+     * No page is downloaded. If YouTube rejects the continuation of the session, update() calls reset() once.
+     *
+     * @param session Session
+     */
+    public YouTubeLiveChat(ChatSession session) {
+        this(session, null);
+    }
+
+    /**
+     * Initialize YouTubeLiveChat from a session saved by getSession() with user data.
+     * No page is downloaded. If YouTube rejects the continuation of the session, update() calls reset() once.
+     *
+     * @param session Session
+     * @param cookie  Cookie (see setUserData(String)), or null
+     */
+    public YouTubeLiveChat(ChatSession session, String cookie) {
+        this(session.isTopChatOnly);
+        if (cookie != null) {
+            this.setCookie(parseCookie(cookie));
+        }
+        this.videoId = session.videoId;
+        this.channelId = session.channelId;
+        this.isReplay = session.isReplay;
+        this.apiKey = session.apiKey;
+        this.clientVersion = session.clientVersion;
+        this.visitorData = session.visitorData != null ? session.visitorData : "";
+        this.datasyncId = session.datasyncId;
+        this.params = session.params;
+        this.continuation = session.continuation;
+        this.replayOffsetMs = session.replayOffsetMs;
+        this.isRestored = true;
+    }
+
+    private YouTubeLiveChat(boolean isTopChatOnly) {
+        this.baseURL = youtubeURL;
+        this.liveChatApi = this.baseURL + "/youtubei/v1/live_chat/get_live_chat?key=";
+        this.liveChatReplayApi = this.baseURL + "/youtubei/v1/live_chat/get_live_chat_replay?key=";
+        this.liveChatSendMessageApi = this.baseURL + "/youtubei/v1/live_chat/send_message?key=";
+        this.liveChatContextMenuApi = this.baseURL + "/youtubei/v1/live_chat/get_item_context_menu?key=";
+        this.liveChatModerateApi = studioURL + "/youtubei/v1/live_chat/moderate?key=";
+        this.liveChatActionApi = studioURL + "/youtubei/v1/live_chat/live_chat_action?key=";
+        this.liveStreamInfoApi = this.baseURL + "/watch?v=";
+        this.isTopChatOnly = isTopChatOnly;
+        this.visitorData = "";
+        this.chatItems = new ArrayList<>();
+        this.chatItemTickerPaidMessages = new ArrayList<>();
+        this.chatItemDeletes = new ArrayList<>();
+        this.listeners = new CopyOnWriteArrayList<>();
+        this.dispatcher = new Dispatcher();
+        this.isChatItemListEnabled = true;
+        this.authorRegistry = AuthorRegistry.getShared();
+        this.customEmojiRegistry = new EmojiRegistry(EmojiRegistry.DEFAULT_CAPACITY);
+        this.metrics = ChatMetrics.getGlobal();
+        this.pollPayload = new JsonBuffer(1024);
+        this.recentIds = new RecentIdSet(DEFAULT_DEDUPLICATION_CAPACITY);
+        this.locale = Locale.US;
+        this.commentCounter = new AtomicInteger();
+        this.clientMessageId = Util.generateClientMessageId();
+        this.minPollIntervalMs = 500;
+        this.maxPollIntervalMs = 10000;
+        this.pollIntervalMs = DEFAULT_POLL_INTERVAL_MS;
+        this.gson = new Gson();
+    }
+
     /**
      * Initialize YouTubeLiveChat using video id
      *
@@ -120,12 +288,16 @@ public class YouTubeLiveChat {
      * @throws IOException Http request error
      */
     public void reset() throws IOException {
+        this.checkClosed();
+        this.metrics.recordReset();
         this.visitorData = "";
+        this.replayOffsetMs = 0;
         this.chatItems.clear();
         this.chatItemTickerPaidMessages.clear();
         this.chatItemDeletes.clear();
-        this.commentCounter = 0;
+        this.commentCounter.set(0);
         this.clientMessageId = Util.generateClientMessageId();
+        this.isRestored = false;
         try {
             this.getInitialData(this.videoId, IdType.VIDEO);
         } catch (IOException exception) {
@@ -149,10 +321,13 @@ public class YouTubeLiveChat {
      * @throws IOException Http request error
      */
     public void update(long offsetInMs) throws IOException {
+        this.checkClosed();
         if (this.isInitDataAvailable) {
             this.isInitDataAvailable = false;
             return;
         }
+        long now = System.currentTimeMillis();
+        this.nextPollDueMillis = now + this.pollIntervalMs;
         this.chatItems.clear();
         this.chatItemTickerPaidMessages.clear();
         this.chatItemDeletes.clear();
@@ -161,84 +336,88 @@ public class YouTubeLiveChat {
             if (this.continuation == null) {
                 throw new IOException("continuation is null! Please call reset().");
             }
-            String pageContent = Util.getPageContentWithJson(
-                    (this.isReplay ? liveChatApi : liveChatApi), this.getPayload(offsetInMs),
-                    this.getHeader());
-            Map<String, Object> json = Util.toJSON(pageContent);
-            if (this.visitorData == null || this.visitorData.isEmpty()) {
-                this.visitorData = Util.getJSONValueString(Util.getJSONMap(json, "responseContext"), "visitorData");
-            }
-            // Get clientVersion
-            List<Object> serviceTrackingParams = Util.getJSONList(json, "serviceTrackingParams", "responseContext");
-            if (serviceTrackingParams != null) {
-                for (Object ser : serviceTrackingParams) {
-                    Map<String, Object> service = (Map<String, Object>) ser;
-                    String serviceName = Util.getJSONValueString(service, "service");
-                    if (serviceName != null && serviceName.equals("CSI")) {
-                        List<Object> params = Util.getJSONList(service, "params");
-                        if (params != null) {
-                            for (Object par : params) {
-                                Map<String, Object> param = (Map<String, Object>) par;
-                                String key = Util.getJSONValueString(param, "key");
-                                if (key != null && key.equals("cver")) {
-                                    this.clientVersion = Util.getJSONValueString(param, "value");
-                                }
-                            }
-                        }
-                    }
+            ChatParser parser = new ChatParser(this, this.dispatcher);
+            try (Reader reader = this.openLiveChat(offsetInMs)) {
+                long parseStart = System.nanoTime();
+                try {
+                    parser.parse(reader);
+                } catch (IOException | RuntimeException exception) {
+                    this.metrics.recordError(ChatMetrics.causeOf(exception));
+                    throw exception;
                 }
+                this.metrics.recordParse(System.nanoTime() - parseStart);
             }
-            // Parse actions and update continuation
-            Map<String, Object> liveChatContinuation = Util.getJSONMap(json, "continuationContents",
-                    "liveChatContinuation");
-            if (this.isReplay) {
-                if (liveChatContinuation != null) {
-                    List<Object> actions = Util.getJSONList(liveChatContinuation, "actions");
-                    if (actions != null) {
-                        this.parseActions(actions);
-                    }
-                }
-                List<Object> continuations = Util.getJSONList(liveChatContinuation, "continuations");
-                // Update continuation
-                if (continuations != null) {
-                    for (Object co : continuations) {
-                        Map<String, Object> continuation = (Map<String, Object>) co;
-                        String value = Util.getJSONValueString(
-                                Util.getJSONMap(continuation, "liveChatReplayContinuationData"), "continuation");
-                        if (value != null) {
-                            this.continuation = value;
-                        }
-                    }
-                }
-            } else {
-                if (liveChatContinuation != null) {
-                    List<Object> actions = Util.getJSONList(liveChatContinuation, "actions");
-                    if (actions != null) {
-                        this.parseActions(actions);
-                    }
-                    List<Object> continuations = Util.getJSONList(liveChatContinuation, "continuations");
-                    if (continuations != null) {
-                        for (Object co : continuations) {
-                            Map<String, Object> continuation = (Map<String, Object>) co;
-                            this.continuation = Util.getJSONValueString(
-                                    Util.getJSONMap(continuation, "invalidationContinuationData"), "continuation");
-                            if (this.continuation == null) {
-                                this.continuation = Util.getJSONValueString(
-                                        Util.getJSONMap(continuation, "timedContinuationData"), "continuation");
-                            }
-                            if (this.continuation == null) {
-                                this.continuation = Util.getJSONValueString(
-                                        Util.getJSONMap(continuation, "reloadContinuationData"), "continuation");
-                            }
-                        }
-                    }
-                }
+            if (this.isRestored && !this.isReplay && parser.continuation == null) {
+                // The continuation of the session is accepted but no longer continues
+                this.reset();
+                return;
+            }
+            this.isRestored = false;
+            // Don't take a broken response as the end of the chat
+            if (!parser.hasLiveChatContinuation || (this.isReplay && !parser.hasContinuations)) {
+                this.metrics.recordError(ChatMetrics.ErrorCause.PARSE);
+                throw new IOException("The response has no continuation contents!");
             }
+            this.metrics.recordUpdate(parser.itemCount);
+            this.applyParseResult(parser);
+            this.updatePollInterval(parser.timeoutMs, parser.itemCount, now);
         } catch (IOException exception) {
             throw new IOException("Can't get youtube live chat!", exception);
         }
     }
 
+    /**
+     * Open the response of get_live_chat or get_live_chat_replay.
+     * If YouTube rejects the continuation restored from a session, this resets and requests again.
+     */
+    private Reader openLiveChat(long offsetInMs) throws IOException {
+        try {
+            return Util.getPageReaderWithJson(
+                    (this.isReplay ? liveChatReplayApi : liveChatApi), this.getPayload(offsetInMs),
+                    this.getHeader(), this.metrics,
+                    this.isReplay ? ChatMetrics.Endpoint.REPLAY : ChatMetrics.Endpoint.LIVE_CHAT);
+        } catch (IOException exception) {
+            int statusCode = Util.getStatusCode(exception);
+            if (!this.isRestored || statusCode < 400 || statusCode >= 500) {
+                throw exception;
+            }
+        }
+        this.reset();
+        return Util.getPageReaderWithJson(
+                (this.isReplay ? liveChatReplayApi : liveChatApi), this.getPayload(offsetInMs),
+                this.getHeader(), this.metrics,
+                this.isReplay ? ChatMetrics.Endpoint.REPLAY : ChatMetrics.Endpoint.LIVE_CHAT);
+    }
+
+    /**
+     * Close this. Connections are shared with other YouTubeLiveChat, so they are kept.
+     * You can't use this after calling this.
+     */
+    @Override
+    public void close() {
+        if (!this.isClosed) {
+            this.isClosed = true;
+            this.chatItems.clear();
+            this.chatItemTickerPaidMessages.clear();
+            this.chatItemDeletes.clear();
+        }
+    }
+
+    /**
+     * Check this is closed.
+     *
+     * @return If this is closed, returns true.
+     */
+    public boolean isClosed() {
+        return this.isClosed;
+    }
+
+    private void checkClosed() {
+        if (this.isClosed) {
+            throw new IllegalStateException("This YouTubeLiveChat is already closed!");
+        }
+    }
+
     /**
      * Send a message to this live chat
      * You need to set user data using setUserData() before calling this method
@@ -264,7 +443,7 @@ public class YouTubeLiveChat {
                         "params is null! You may not set appropriate Cookie. Please call reset().");
             }
             Util.sendHttpRequestWithJson(liveChatSendMessageApi + this.apiKey, this.getPayloadToSendMessage(message),
-                    this.getHeader());
+                    this.getHeader(), this.metrics, ChatMetrics.Endpoint.SEND_MESSAGE);
         } catch (IOException exception) {
             throw new IOException("Couldn't send a message!", exception);
         }
@@ -290,7 +469,8 @@ public class YouTubeLiveChat {
                 }
             }
             Util.sendHttpRequestWithJson(liveChatModerateApi + this.apiKey,
-                    this.getPayloadClient(chatItem.chatDeleteParams), this.getHeader());
+                    this.getPayloadClient(chatItem.chatDeleteParams), this.getHeader(), this.metrics,
+                    ChatMetrics.Endpoint.MODERATE);
         } catch (IOException exception) {
             throw new IOException("Couldn't delete chat!", exception);
         }
@@ -316,7 +496,8 @@ public class YouTubeLiveChat {
                 }
             }
             Util.sendHttpRequestWithJson(liveChatModerateApi + this.apiKey,
-                    this.getPayloadClient(chatItem.timeBanParams), this.getHeader());
+                    this.getPayloadClient(chatItem.timeBanParams), this.getHeader(), this.metrics,
+                    ChatMetrics.Endpoint.MODERATE);
         } catch (IOException exception) {
             throw new IOException("Couldn't ban user!", exception);
         }
@@ -342,7 +523,8 @@ public class YouTubeLiveChat {
                 }
             }
             Util.sendHttpRequestWithJson(liveChatModerateApi + this.apiKey,
-                    this.getPayloadClient(chatItem.userBanParams), this.getHeader());
+                    this.getPayloadClient(chatItem.userBanParams), this.getHeader(), this.metrics,
+                    ChatMetrics.Endpoint.MODERATE);
         } catch (IOException exception) {
             throw new IOException("Couldn't ban user!", exception);
         }
@@ -368,7 +550,8 @@ public class YouTubeLiveChat {
                 }
             }
             Util.sendHttpRequestWithJson(liveChatModerateApi + this.apiKey,
-                    this.getPayloadClient(chatItem.userUnbanParams), this.getHeader());
+                    this.getPayloadClient(chatItem.userUnbanParams), this.getHeader(), this.metrics,
+                    ChatMetrics.Endpoint.MODERATE);
         } catch (IOException exception) {
             throw new IOException("Couldn't unban user!", exception);
         }
@@ -394,7 +577,8 @@ public class YouTubeLiveChat {
                 }
             }
             Util.sendHttpRequestWithJson(liveChatActionApi + this.apiKey,
-                    this.getPayloadClient(chatItem.pinToTopParams), this.getHeader());
+                    this.getPayloadClient(chatItem.pinToTopParams), this.getHeader(), this.metrics,
+                    ChatMetrics.Endpoint.MODERATE);
         } catch (IOException exception) {
             throw new IOException("Couldn't pin chat!", exception);
         }
@@ -421,14 +605,14 @@ public class YouTubeLiveChat {
      * Set user data.
      * Cookies can be found in Chrome Devtools(F12) 'Network' tab, 'get_live_chat'
      * request.
-     * You need all cookies.
+     * You need all cookies. The map is copied, so changes after calling this are not used.
      *
      * @param cookie Cookie
      *
      * @throws IOException Http request error
      */
     public void setUserData(Map<String, String> cookie) throws IOException {
-        this.cookie = cookie;
+        this.setCookie(new LinkedHashMap<>(cookie));
         this.reset();
     }
 
@@ -443,242 +627,266 @@ public class YouTubeLiveChat {
      * @throws IOException Http request error
      */
     public void setUserData(String cookie) throws IOException {
+        this.setCookie(parseCookie(cookie));
+        this.reset();
+    }
+
+    private static Map<String, String> parseCookie(String cookie) {
         String[] cookies = cookie.split(";");
-        this.cookie = new HashMap<>();
+        Map<String, String> map = new LinkedHashMap<>();
         for (String c : cookies) {
-            this.cookie.put(c.substring(0, c.indexOf("=")).trim(), c.substring(c.indexOf("=") + 1).trim());
+            map.put(c.substring(0, c.indexOf("=")).trim(), c.substring(c.indexOf("=") + 1).trim());
         }
-        this.reset();
+        return map;
     }
 
-    private void parseActions(List<Object> json) {
-        for (Object i : json) {
-            Map<String, Object> actions = (Map<String, Object>) i;
-            Map<String, Object> addChatItemAction = Util.getJSONMap(actions, "addChatItemAction");
-            // For replay
-            if (addChatItemAction == null) {
-                Map<String, Object> replayChatItemAction = Util.getJSONMap(actions, "replayChatItemAction");
-                if (replayChatItemAction != null) {
-                    List<Object> acts = Util.getJSONList(replayChatItemAction, "actions");
-                    if (acts != null) {
-                        parseActions(acts);
-                    }
-                }
-            }
-            if (addChatItemAction != null) {
-                ChatItem chatItem = null;
-                Map<String, Object> item = Util.getJSONMap(addChatItemAction, "item");
-                if (item != null) {
-                    chatItem = new ChatItem(this);
-                    this.parseChatItem(chatItem, item);
-                }
-                if (chatItem != null && chatItem.id != null) {
-                    this.chatItems.add(chatItem);
-                }
-            }
-            // Pinned message
-            Map<String, Object> contents = Util.getJSONMap(actions, "addBannerToLiveChatCommand", "bannerRenderer",
-                    "liveChatBannerRenderer", "contents");
-            if (contents != null) {
-                ChatItem chatItem = new ChatItem(this);
-                this.parseChatItem(chatItem, contents);
-                this.bannerItem = chatItem;
-            }
-            Map<String, Object> markChatItemAsDeletedAction = Util.getJSONMap(actions, "markChatItemAsDeletedAction");
-            if (markChatItemAsDeletedAction != null) {
-                ChatItemDelete chatItemDelete = new ChatItemDelete();
-                chatItemDelete.message = this.parseMessage(
-                        Util.getJSONMap(markChatItemAsDeletedAction, "deletedStateMessage"), new ArrayList<>());
-                chatItemDelete.targetId = Util.getJSONValueString(markChatItemAsDeletedAction, "targetItemId");
-                this.chatItemDeletes.add(chatItemDelete);
-            }
+    /**
+     * Keep a copy of the cookie and prebuild Cookie header from it.
+     */
+    private void setCookie(Map<String, String> cookie) {
+        StringBuilder header = new StringBuilder();
+        for (Map.Entry<String, String> c : cookie.entrySet()) {
+            header.append(c.getKey()).append("=").append(c.getValue()).append(";");
         }
+        this.cookieHeader = header.toString();
+        this.cookie = Collections.unmodifiableMap(cookie);
+        this.authHeader = null;
     }
 
-    private void parseChatItem(ChatItem chatItem, Map<String, Object> action) {
-        Map<String, Object> liveChatTextMessageRenderer = Util.getJSONMap(action, "liveChatTextMessageRenderer");
-        Map<String, Object> liveChatPaidMessageRenderer = Util.getJSONMap(action, "liveChatPaidMessageRenderer");
-        Map<String, Object> liveChatPaidStickerRenderer = Util.getJSONMap(action, "liveChatPaidStickerRenderer");
-        Map<String, Object> liveChatMembershipItemRenderer = Util.getJSONMap(action, "liveChatMembershipItemRenderer");
-        if (liveChatTextMessageRenderer == null && liveChatPaidMessageRenderer != null) {
-            liveChatTextMessageRenderer = liveChatPaidMessageRenderer;
-        }
-        if (liveChatTextMessageRenderer == null && liveChatPaidStickerRenderer != null) {
-            liveChatTextMessageRenderer = liveChatPaidStickerRenderer;
-        }
-        if (liveChatTextMessageRenderer == null && liveChatMembershipItemRenderer != null) {
-            liveChatTextMessageRenderer = liveChatMembershipItemRenderer;
-        }
-        if (liveChatTextMessageRenderer != null) {
-            chatItem.authorName = Util.getJSONValueString(Util.getJSONMap(liveChatTextMessageRenderer, "authorName"),
-                    "simpleText");
-            chatItem.id = Util.getJSONValueString(liveChatTextMessageRenderer, "id");
-            chatItem.authorChannelID = Util.getJSONValueString(liveChatTextMessageRenderer, "authorExternalChannelId");
-            Map<String, Object> message = Util.getJSONMap(liveChatTextMessageRenderer, "message");
-            chatItem.messageExtended = new ArrayList<>();
-            chatItem.message = parseMessage(message, chatItem.messageExtended);
-            List<Object> authorPhotoThumbnails = Util.getJSONList(liveChatTextMessageRenderer, "thumbnails",
-                    "authorPhoto");
-            if (authorPhotoThumbnails != null) {
-                chatItem.authorIconURL = this.getJSONThumbnailURL(authorPhotoThumbnails);
-            }
-            String timestampStr = Util.getJSONValueString(liveChatTextMessageRenderer, "timestampUsec");
-            if (timestampStr != null) {
-                chatItem.timestamp = Long.parseLong(timestampStr);
-            }
-            List<Object> authorBadges = Util.getJSONList(liveChatTextMessageRenderer, "authorBadges");
-            if (authorBadges != null) {
-                for (Object au : authorBadges) {
-                    Map<String, Object> authorBadge = (Map<String, Object>) au;
-                    Map<String, Object> liveChatAuthorBadgeRenderer = Util.getJSONMap(authorBadge,
-                            "liveChatAuthorBadgeRenderer");
-                    if (liveChatAuthorBadgeRenderer != null) {
-                        String type = Util.getJSONValueString(Util.getJSONMap(liveChatAuthorBadgeRenderer, "icon"),
-                                "iconType");
-                        if (type != null) {
-                            switch (type) {
-                                case "VERIFIED":
-                                    chatItem.authorType.add(AuthorType.VERIFIED);
-                                    break;
-                                case "OWNER":
-                                    chatItem.authorType.add(AuthorType.OWNER);
-                                    break;
-                                case "MODERATOR":
-                                    chatItem.authorType.add(AuthorType.MODERATOR);
-                                    break;
-                            }
-                        }
-                        Map<String, Object> customThumbnail = Util.getJSONMap(liveChatAuthorBadgeRenderer,
-                                "customThumbnail");
-                        if (customThumbnail != null) {
-                            chatItem.authorType.add(AuthorType.MEMBER);
-                            List<Object> thumbnails = (List<Object>) customThumbnail.get("thumbnails");
-                            chatItem.memberBadgeIconURL = this.getJSONThumbnailURL(thumbnails);
-                        }
-                    }
-                }
-            }
-            // Context Menu Params
-            String contextMenuParams = Util.getJSONValueString(Util.getJSONMap(liveChatTextMessageRenderer,
-                    "contextMenuEndpoint", "liveChatItemContextMenuEndpoint"), "params");
-            if (contextMenuParams != null) {
-                chatItem.contextMenuParams = contextMenuParams;
-            }
+    /**
+     * Decide when the next update() is useful.
+     * This starts from timeoutMs sent by YouTube, waits longer on quiet lives and shorter on busy lives.
+     */
+    private void updatePollInterval(long timeoutMs, int itemCount, long now) {
+        if (this.lastPollMillis > 0 && now > this.lastPollMillis) {
+            double rate = (double) itemCount / (now - this.lastPollMillis);
+            this.itemRate = this.itemRate == 0 ? rate : this.itemRate * 0.7 + rate * 0.3;
         }
-        if (action.containsKey("liveChatViewerEngagementMessageRenderer")) {
-            Map<String, Object> liveChatViewerEngagementMessageRenderer = (Map<String, Object>) action
-                    .get("liveChatViewerEngagementMessageRenderer");
-            chatItem.authorName = "YouTube";
-            chatItem.authorChannelID = "user/YouTube";
-            chatItem.authorType.add(AuthorType.YOUTUBE);
-            chatItem.id = Util.getJSONValueString(liveChatViewerEngagementMessageRenderer, "id");
-            chatItem.messageExtended = new ArrayList<>();
-            chatItem.message = this.parseMessage(Util.getJSONMap(liveChatViewerEngagementMessageRenderer, "message"),
-                    chatItem.messageExtended);
-            String timestampStr = Util.getJSONValueString(liveChatViewerEngagementMessageRenderer, "timestampUsec");
-            if (timestampStr != null) {
-                chatItem.timestamp = Long.parseLong(timestampStr);
-            }
+        this.lastPollMillis = now;
+        long interval = timeoutMs > 0 ? timeoutMs : this.pollIntervalMs;
+        if (itemCount == 0) {
+            // Back off
+            interval = Math.max(interval, this.pollIntervalMs * 3 / 2);
+        } else if (this.itemRate > 0) {
+            // Tighten
+            interval = Math.min(interval, (long) (TARGET_ITEMS_PER_POLL / this.itemRate));
         }
-        if (liveChatPaidMessageRenderer != null) {
-            chatItem.bodyBackgroundColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "bodyBackgroundColor");
-            chatItem.bodyTextColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "bodyBackgroundColor");
-            chatItem.headerBackgroundColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "bodyBackgroundColor");
-            chatItem.headerTextColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "bodyBackgroundColor");
-            chatItem.authorNameTextColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "authorNameTextColor");
-            chatItem.purchaseAmount = Util.getJSONValueString(
-                    Util.getJSONMap(liveChatPaidMessageRenderer, "purchaseAmountText"), "simpleText");
-            chatItem.type = ChatItemType.PAID_MESSAGE;
-        }
-        if (liveChatPaidStickerRenderer != null) {
-            chatItem.backgroundColor = Util.getJSONValueInt(liveChatPaidStickerRenderer, "backgroundColor");
-            chatItem.purchaseAmount = Util.getJSONValueString(
-                    Util.getJSONMap(liveChatPaidStickerRenderer, "purchaseAmountText"), "simpleText");
-            List<Object> thumbnails = Util.getJSONList(liveChatPaidStickerRenderer, "thumbnails", "sticker");
-            if (thumbnails != null) {
-                chatItem.stickerIconURL = this.getJSONThumbnailURL(thumbnails);
-            }
-            chatItem.type = ChatItemType.PAID_STICKER;
-        }
-        Map<String, Object> liveChatTickerPaidMessageItemRenderer = Util.getJSONMap(action,
-                "liveChatTickerPaidMessageItemRenderer");
-        if (liveChatTickerPaidMessageItemRenderer != null) {
-            Map<String, Object> renderer = Util.getJSONMap(liveChatPaidMessageRenderer, "showItemEndpoint",
-                    "showLiveChatItemEndpoint", "renderer");
-            this.parseChatItem(chatItem, renderer);
-            chatItem.endBackgroundColor = Util.getJSONValueInt(liveChatPaidMessageRenderer, "endBackgroundColor");
-            chatItem.durationSec = Util.getJSONValueInt(liveChatPaidMessageRenderer, "durationSec");
-            chatItem.fullDurationSec = Util.getJSONValueInt(liveChatPaidMessageRenderer, "fullDurationSec");
-            chatItem.type = ChatItemType.TICKER_PAID_MESSAGE;
-        }
-        if (liveChatMembershipItemRenderer != null) {
-            chatItem.messageExtended = new ArrayList<>();
-            chatItem.message = this.parseMessage(Util.getJSONMap(liveChatMembershipItemRenderer, "headerSubtext"),
-                    chatItem.messageExtended);
-            chatItem.type = ChatItemType.NEW_MEMBER_MESSAGE;
-        }
-    }
-
-    private String getJSONThumbnailURL(List<Object> thumbnails) {
-        long size = 0;
-        String url = null;
-        for (Object tObj : thumbnails) {
-            Map<String, Object> thumbnail = (Map<String, Object>) tObj;
-            long width = Util.getJSONValueLong(thumbnail, "width");
-            String u = Util.getJSONValueString(thumbnail, "url");
-            if (u != null) {
-                if (size <= width) {
-                    size = width;
-                    url = u;
-                }
-            }
+        this.pollIntervalMs = Math.max(this.minPollIntervalMs, Math.min(this.maxPollIntervalMs, interval));
+        this.nextPollDueMillis = now + this.pollIntervalMs;
+    }
+
+    /**
+     * Get the time when the next update() is useful.
+     * This is decided from the hint sent by YouTube and the number of recent messages.
+     *
+     * @return Time in UNIX time (milli seconds)
+     */
+    public long getNextPollDueMillis() {
+        return this.nextPollDueMillis;
+    }
+
+    /**
+     * Get current poll interval.
+     *
+     * @return Poll interval in milli seconds
+     */
+    public long getPollIntervalMs() {
+        return this.pollIntervalMs;
+    }
+
+    /**
+     * Set bounds of the poll interval.
+     * Default is from 500 ms to 10000 ms.
+     *
+     * @param minPollIntervalMs Min poll interval in milli seconds
+     * @param maxPollIntervalMs Max poll interval in milli seconds
+     */
+    public void setPollIntervalBounds(long minPollIntervalMs, long maxPollIntervalMs) {
+        if (minPollIntervalMs < 0 || minPollIntervalMs > maxPollIntervalMs) {
+            throw new IllegalArgumentException("Invalid poll interval bounds!");
         }
-        return url;
+        this.minPollIntervalMs = minPollIntervalMs;
+        this.maxPollIntervalMs = maxPollIntervalMs;
+        this.pollIntervalMs = Math.max(minPollIntervalMs, Math.min(maxPollIntervalMs, this.pollIntervalMs));
     }
 
-    private String parseMessage(Map<String, Object> message, List<Object> messageExtended) {
-        StringBuilder text = new StringBuilder();
-        List<Object> runs = Util.getJSONList(message, "runs");
-        if (runs != null) {
-            text = new StringBuilder();
-            for (Object runObj : runs) {
-                Map<String, Object> run = (Map<String, Object>) runObj;
-                if (run.containsKey("text")) {
-                    text.append(run.get("text").toString());
-                    messageExtended.add(new Text(run.get("text").toString()));
-                }
-                Map<String, Object> emojiMap = Util.getJSONMap(run, "emoji");
-                if (emojiMap != null) {
-                    Emoji emoji = new Emoji();
-                    emoji.emojiId = Util.getJSONValueString(emojiMap, "emojiId");
-                    List<Object> shortcutsList = Util.getJSONList(emojiMap, "shortcuts");
-                    ArrayList<String> shortcuts = new ArrayList<>();
-                    if (shortcutsList != null) {
-                        for (Object s : shortcutsList) {
-                            shortcuts.add(s.toString());
-                        }
-                    }
-                    emoji.shortcuts = shortcuts;
-                    if (!shortcuts.isEmpty())
-                        text.append(" ").append(shortcuts.get(0)).append(" ");
-                    List<Object> searchTermsList = Util.getJSONList(emojiMap, "searchTerms");
-                    ArrayList<String> searchTerms = new ArrayList<>();
-                    if (searchTermsList != null) {
-                        for (Object s : searchTermsList) {
-                            searchTerms.add(s.toString());
-                        }
-                    }
-                    emoji.searchTerms = searchTerms;
-                    List<Object> thumbnails = Util.getJSONList(emojiMap, "thumbnails", "image");
-                    if (thumbnails != null) {
-                        emoji.iconURL = this.getJSONThumbnailURL(thumbnails);
-                    }
-                    emoji.isCustomEmoji = Util.getJSONValueBoolean(emojiMap, "isCustomEmoji");
-                    messageExtended.add(emoji);
-                }
-            }
+    private void applyParseResult(ChatParser parser) {
+        if (this.visitorData == null || this.visitorData.isEmpty()) {
+            this.visitorData = parser.visitorData;
+        }
+        if (parser.clientVersion != null) {
+            this.clientVersion = parser.clientVersion;
+        }
+        if (parser.videoOffsetMs > this.replayOffsetMs) {
+            this.replayOffsetMs = parser.videoOffsetMs;
         }
-        return text.length() == 0 ? null : text.toString();
+        // Update continuation. The last response of replay has continuations without a next continuation.
+        if (parser.continuation != null) {
+            this.continuation = parser.continuation;
+        } else if (this.isReplay) {
+            this.continuation = null;
+            this.metrics.recordFinishedReplay();
+        } else if (parser.hasContinuations) {
+            this.continuation = null;
+            this.metrics.recordContinuationLoss();
+        }
+    }
+
+    /**
+     * Add a listener. Events are delivered while update() parses the response.
+     *
+     * @param listener Listener
+     */
+    public void addListener(ChatListener listener) {
+        this.listeners.add(Objects.requireNonNull(listener));
+    }
+
+    /**
+     * Remove a listener.
+     *
+     * @param listener Listener
+     */
+    public void removeListener(ChatListener listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Set whether update() stores items to the lists returned by getChatItems(), getChatItemDeletes()
+     * and getChatTickerPaidMessages().
+     * If you only use listeners, you can disable this to avoid keeping items. Default is true.
+     *
+     * @param enabled If true, items are stored
+     */
+    public void setChatItemListEnabled(boolean enabled) {
+        this.isChatItemListEnabled = enabled;
+        if (!enabled) {
+            this.chatItems.clear();
+            this.chatItemTickerPaidMessages.clear();
+            this.chatItemDeletes.clear();
+        }
+    }
+
+    /**
+     * Set how many recent item ids are remembered to drop duplicated items.
+     * Items which have the same id as a remembered one are not delivered again even after reset().
+     * Memory used by this is fixed (16 bytes per id). Default is 2048.
+     * ReplayArchiver needs this to drop items of overlapping requests.
+     *
+     * @param capacity Number of ids, or 0 to disable deduplication
+     */
+    public void setDeduplicationCapacity(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative!");
+        }
+        this.recentIds = capacity == 0 ? null : new RecentIdSet(Math.max(2, capacity));
+    }
+
+    boolean isDeduplicationEnabled() {
+        return this.recentIds != null;
+    }
+
+    /**
+     * Set the registry which ChatItem get their Author from.
+     * By default all YouTubeLiveChat use AuthorRegistry.getShared().
+     *
+     * @param authorRegistry AuthorRegistry
+     */
+    public void setAuthorRegistry(AuthorRegistry authorRegistry) {
+        if (authorRegistry == null) {
+            throw new IllegalArgumentException("authorRegistry must not be null!");
+        }
+        this.authorRegistry = authorRegistry;
+    }
+
+    /**
+     * Get the registry which ChatItem get their Author from.
+     *
+     * @return AuthorRegistry
+     */
+    public AuthorRegistry getAuthorRegistry() {
+        return this.authorRegistry;
+    }
+
+    /**
+     * Set the registry which custom emojis of this channel are registered to.
+     * You can share one registry between YouTubeLiveChat of the same channel.
+     * Standard emojis are always registered to EmojiRegistry.getStandard().
+     *
+     * @param customEmojiRegistry EmojiRegistry
+     */
+    public void setCustomEmojiRegistry(EmojiRegistry customEmojiRegistry) {
+        if (customEmojiRegistry == null) {
+            throw new IllegalArgumentException("customEmojiRegistry must not be null!");
+        }
+        this.customEmojiRegistry = customEmojiRegistry;
+    }
+
+    /**
+     * Get the registry which custom emojis of this channel are registered to.
+     *
+     * @return EmojiRegistry
+     */
+    public EmojiRegistry getCustomEmojiRegistry() {
+        return this.customEmojiRegistry;
+    }
+
+    /**
+     * Set whether ChatItem are decoded lazily.
+     * If enabled, only id, type, timestamp, author channel id, message and message extended are decoded in update(),
+     * and other fields like author name, colors and purchase amount are decoded when one of them is used first.
+     * This makes update() faster if you drop most items, but undecoded items keep the text of the response. Default is false.
+     *
+     * @param enabled If true, ChatItem are decoded lazily
+     */
+    public void setLazyDecoding(boolean enabled) {
+        this.isLazyDecoding = enabled;
+    }
+
+    /**
+     * Check if ChatItem are decoded lazily.
+     *
+     * @return If ChatItem are decoded lazily, returns true.
+     */
+    public boolean isLazyDecoding() {
+        return this.isLazyDecoding;
+    }
+
+    /**
+     * Set ChatMetrics which this reports to. Default is ChatMetrics.getGlobal().
+     * Use new ChatMetrics(name) to see this session alone; it reports to ChatMetrics.getGlobal() too.
+     *
+     * @param metrics ChatMetrics
+     */
+    public void setMetrics(ChatMetrics metrics) {
+        this.metrics = Objects.requireNonNull(metrics);
+    }
+
+    /**
+     * Get ChatMetrics which this reports to.
+     *
+     * @return ChatMetrics
+     */
+    public ChatMetrics getMetrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Set ContextMenuCache which getContextMenu() uses. Default is null (no cache).
+     * ContextMenuPrefetcher fills this in background.
+     *
+     * @param contextMenuCache ContextMenuCache or null
+     */
+    public void setContextMenuCache(ContextMenuCache contextMenuCache) {
+        this.contextMenuCache = contextMenuCache;
+    }
+
+    /**
+     * Get ContextMenuCache which getContextMenu() uses.
+     *
+     * @return ContextMenuCache or null
+     */
+    public ContextMenuCache getContextMenuCache() {
+        return this.contextMenuCache;
     }
 
     /**
@@ -699,6 +907,32 @@ public class YouTubeLiveChat {
         return this.channelId;
     }
 
+    /**
+     * Get the state of this to continue the chat later using YouTubeLiveChat(ChatSession).
+     * Call this between update() calls.
+     *
+     * @return Session
+     * @throws IllegalStateException The continuation is lost
+     */
+    public ChatSession getSession() {
+        if (this.continuation == null) {
+            throw new IllegalStateException("continuation is null! Please call reset().");
+        }
+        ChatSession session = new ChatSession();
+        session.videoId = this.videoId;
+        session.channelId = this.channelId;
+        session.isReplay = this.isReplay;
+        session.isTopChatOnly = this.isTopChatOnly;
+        session.apiKey = this.apiKey;
+        session.clientVersion = this.clientVersion;
+        session.visitorData = this.visitorData;
+        session.datasyncId = this.datasyncId;
+        session.params = this.params;
+        session.continuation = this.continuation;
+        session.replayOffsetMs = this.replayOffsetMs;
+        return session;
+    }
+
     /**
      * Check this live replay is replay.
      *
@@ -708,6 +942,24 @@ public class YouTubeLiveChat {
         return this.isReplay;
     }
 
+    /**
+     * Get the position in the video of the latest item received in replay.
+     *
+     * @return Position in milli seconds
+     */
+    public long getReplayOffsetMs() {
+        return this.replayOffsetMs;
+    }
+
+    /**
+     * Check all items of this replay have been received.
+     *
+     * @return If this is replay and there are no more items, returns true.
+     */
+    public boolean isReplayFinished() {
+        return this.isReplay && this.continuation == null;
+    }
+
     /**
      * Get pinned message
      *
@@ -747,116 +999,158 @@ public class YouTubeLiveChat {
     private void getInitialData(String id, IdType type) throws IOException {
         this.isInitDataAvailable = true;
         {
-            String html = "";
+            PageExtractor watchPage = newWatchPageExtractor(type, this.isTopChatOnly, !this.isIDsMissing());
+            String url;
             if (type == IdType.VIDEO) {
                 this.videoId = id;
-                html = Util.getPageContent("https://www.youtube.com/watch?v=" + id, getHeader());
-                Matcher channelIdMatcher = Pattern.compile("\"channelId\":\"([^\"]*)\",\"isOwnerViewing\"")
-                        .matcher(Objects.requireNonNull(html));
-                if (channelIdMatcher.find()) {
-                    this.channelId = channelIdMatcher.group(1);
-                }
+                url = this.baseURL + "/watch?v=" + id;
             } else if (type == IdType.CHANNEL) {
                 this.channelId = id;
-                html = Util.getPageContent("https://www.youtube.com/channel/" + id + "/live", getHeader());
-                Matcher videoIdMatcher = Pattern.compile("\"updatedMetadataEndpoint\":\\{\"videoId\":\"([^\"]*)")
-                        .matcher(Objects.requireNonNull(html));
-                if (videoIdMatcher.find()) {
-                    this.videoId = videoIdMatcher.group(1);
-                } else {
-                    throw new IOException("The channel (ID:" + this.channelId + ") has not started live streaming!");
-                }
-            } else if (type == IdType.USER) {
+                url = this.baseURL + "/channel/" + id + "/live";
+            } else {
                 this.userId = id;
-                html = Util.getPageContent("https://www.youtube.com/@" + this.userId + "/live", getHeader());
-                Matcher videoIdMatcher = Pattern.compile("\"updatedMetadataEndpoint\":\\{\"videoId\":\"([^\"]*)")
-                        .matcher(Objects.requireNonNull(html));
-                if (videoIdMatcher.find()) {
-                    this.videoId = videoIdMatcher.group(1);
-                } else {
+                url = this.baseURL + "/@" + this.userId + "/live";
+            }
+            watchPage.extract(this.openPage(url, this.getHeader(), ChatMetrics.Endpoint.WATCH_PAGE));
+            if (type != IdType.VIDEO) {
+                this.videoId = watchPage.get(UPDATED_VIDEO_ID);
+                if (this.videoId == null) {
+                    if (type == IdType.CHANNEL) {
+                        throw new IOException("The channel (ID:" + this.channelId + ") has not started live streaming!");
+                    }
                     throw new IOException("The user (ID:" + this.userId + ") has not started live streaming!");
                 }
             }
-            Matcher isReplayMatcher = Pattern.compile("\"isReplay\":([^,]*)").matcher(html);
-            if (isReplayMatcher.find()) {
-                this.isReplay = Boolean.parseBoolean(isReplayMatcher.group(1));
+            if (watchPage.get(CHANNEL_ID) != null) {
+                this.channelId = watchPage.get(CHANNEL_ID);
             }
-            Matcher topOnlyContinuationMatcher = Pattern.compile(
-                    "\"selected\":true,\"continuation\":\\{\"reloadContinuationData\":\\{\"continuation\":\"([^\"]*)")
-                    .matcher(html);
-            if (topOnlyContinuationMatcher.find()) {
-                this.continuation = topOnlyContinuationMatcher.group(1);
+            if (watchPage.get(IS_REPLAY) != null) {
+                this.isReplay = Boolean.parseBoolean(watchPage.get(IS_REPLAY));
             }
-            if (!this.isTopChatOnly) {
-                Matcher allContinuationMatcher = Pattern.compile(
-                        "\"selected\":false,\"continuation\":\\{\"reloadContinuationData\":\\{\"continuation\":\"([^\"]*)")
-                        .matcher(html);
-                if (allContinuationMatcher.find()) {
-                    this.continuation = allContinuationMatcher.group(1);
-                }
+            if (watchPage.get(TOP_ONLY_CONTINUATION) != null) {
+                this.continuation = watchPage.get(TOP_ONLY_CONTINUATION);
             }
-            Matcher innertubeApiKeyMatcher = Pattern.compile("\"innertubeApiKey\":\"([^\"]*)\"").matcher(html);
-            if (innertubeApiKeyMatcher.find()) {
-                this.apiKey = innertubeApiKeyMatcher.group(1);
+            if (!this.isTopChatOnly && watchPage.get(ALL_CONTINUATION) != null) {
+                this.continuation = watchPage.get(ALL_CONTINUATION);
             }
-            Matcher datasyncIdMatcher = Pattern.compile("\"datasyncId\":\"([^|]*)\\|\\|.*\"").matcher(html);
-            if (datasyncIdMatcher.find()) {
-                this.datasyncId = datasyncIdMatcher.group(1);
+            if (watchPage.get(INNERTUBE_API_KEY) != null) {
+                this.apiKey = watchPage.get(INNERTUBE_API_KEY);
             }
-            if (this.isReplay) {
-                html = Util.getPageContent(
-                        "https://www.youtube.com/live_chat_replay?continuation=" + this.continuation + "",
-                        new HashMap<>());
-                String initJson = Objects.requireNonNull(html).substring(
-                        html.indexOf("ytcfg.set({\"DEVICE\"") + "ytcfg.set(".length());
-                initJson = initJson.substring(0, initJson.indexOf("); window.ytcfg"));
-                Map<String, Object> json = Util.toJSON(initJson);
-                String visitorData = Util.getJSONValueString(json, "VISITOR_DATA");
-                if (visitorData != null) {
-                    this.visitorData = visitorData;
-                }
-                Map<String, Object> timedContinuationData = Util.getJSONMap(json, "continuationContents",
-                        "liveChatContinuation", "continuations", 0, "liveChatReplayContinuationData");
-                if (timedContinuationData != null) {
-                    this.continuation = timedContinuationData.get("continuation").toString();
-                }
-                List<Object> actions = Util.getJSONList(json, "actions", "continuationContents",
-                        "liveChatContinuation");
-                if (actions != null) {
-                    this.parseActions(actions);
-                }
-                throw new IOException("Replay is not supported yet.");
-            } else {
-                html = Util.getPageContent("https://www.youtube.com/live_chat?v=" + this.videoId + "",
-                        getHeader());
-                String initJson = Objects.requireNonNull(html).substring(
-                        html.indexOf("window[\"ytInitialData\"] = ") + "window[\"ytInitialData\"] = ".length());
-                initJson = initJson.substring(0, initJson.indexOf(";</script>"));
-                Map<String, Object> json = Util.toJSON(initJson);
-                Map<String, Object> sendLiveChatMessageEndpoint = Util.getJSONMap(json, "continuationContents",
-                        "liveChatContinuation", "actionPanel", "liveChatMessageInputRenderer", "sendButton",
-                        "buttonRenderer", "serviceEndpoint", "sendLiveChatMessageEndpoint");
-                List<Object> liveChatRenderer = Util.getJSONList(json, "continuations", "contents", "liveChatRenderer");
-                for (Object object : liveChatRenderer) {
-                    if (object instanceof Map) {
-                        Map<String, Object> renderer = (Map<String, Object>) object;
-                        String continuation = Util.getJSONValueString(
-                                Util.getJSONMap(renderer, "invalidationContinuationData"),
-                                "continuation");
-                        if (continuation != null) {
-                            this.continuation = continuation;
-                        }
-                        break;
-                    }
+            if (watchPage.get(DATASYNC_ID) != null) {
+                this.datasyncId = watchPage.get(DATASYNC_ID);
+            }
+            // Replay chat is fetched from get_live_chat_replay using the continuation in the watch page
+            if (!this.isReplay) {
+                PageExtractor liveChatPage = newLiveChatPageExtractor(!this.isIDsMissing());
+                liveChatPage.extract(this.openPage(this.baseURL + "/live_chat?v=" + this.videoId,
+                        this.getHeader(), ChatMetrics.Endpoint.LIVE_CHAT_PAGE));
+                if (liveChatPage.get(LIVE_CHAT_CONTINUATION) != null) {
+                    this.continuation = liveChatPage.get(LIVE_CHAT_CONTINUATION);
                 }
-                if (sendLiveChatMessageEndpoint != null) {
-                    this.params = sendLiveChatMessageEndpoint.get("params").toString();
+                if (liveChatPage.get(SEND_MESSAGE_PARAMS) != null) {
+                    this.params = liveChatPage.get(SEND_MESSAGE_PARAMS);
                 }
-                this.isInitDataAvailable = false;
             }
+            this.isInitDataAvailable = false;
         }
     }
 
+    /**
+     * Create PageExtractor for the watch page (or the live page of a channel or a user).
+     *
+     * @param type          Type of id used to open the page
+     * @param isTopChatOnly Is this top chat only
+     * @param isLoggedIn    Is user data set
+     * @return PageExtractor
+     */
+    static PageExtractor newWatchPageExtractor(IdType type, boolean isTopChatOnly, boolean isLoggedIn) {
+        PageExtractor watchPage = new PageExtractor();
+        if (type == IdType.VIDEO) {
+            watchPage.add(CHANNEL_ID, true);
+        } else if (type == IdType.CHANNEL) {
+            watchPage.add(UPDATED_VIDEO_ID, true);
+        } else {
+            watchPage.add(UPDATED_VIDEO_ID, true).add(CHANNEL_ID, false);
+        }
+        return watchPage.add(IS_REPLAY, false)
+                .add(TOP_ONLY_CONTINUATION, isTopChatOnly)
+                .add(ALL_CONTINUATION, !isTopChatOnly)
+                .add(INNERTUBE_API_KEY, true)
+                .add(DATASYNC_ID, isLoggedIn);
+    }
+
+    /**
+     * Create PageExtractor for the live_chat page.
+     *
+     * @param isLoggedIn Is user data set
+     * @return PageExtractor
+     */
+    static PageExtractor newLiveChatPageExtractor(boolean isLoggedIn) {
+        return new PageExtractor()
+                .add(LIVE_CHAT_CONTINUATION, true)
+                .add(SEND_MESSAGE_PARAMS, isLoggedIn);
+    }
+
+    /**
+     * Create PageExtractor for the live page of a channel, which only finds the live video id.
+     * The canonical url is in the head of the page, so reading stops early.
+     *
+     * @return PageExtractor
+     */
+    static PageExtractor newChannelLivePageExtractor() {
+        return new PageExtractor()
+                .add(CANONICAL_URL, true)
+                .add(UPDATED_VIDEO_ID, false);
+    }
+
+    /**
+     * Get the live video id from a page read by newChannelLivePageExtractor().
+     *
+     * @param channelLivePage PageExtractor
+     * @return Video id, or null if the channel is not live streaming
+     */
+    static String getLiveVideoId(PageExtractor channelLivePage) {
+        String canonical = channelLivePage.get(CANONICAL_URL);
+        if (canonical != null) {
+            // Offline channels redirect to the channel page
+            int index = canonical.indexOf("/watch?v=");
+            if (index < 0) {
+                return null;
+            }
+            int end = canonical.indexOf('&', index);
+            return canonical.substring(index + 9, end >= 0 ? end : canonical.length());
+        }
+        return channelLivePage.get(UPDATED_VIDEO_ID);
+    }
+
+    /**
+     * Create PageExtractor for a channel page, which only finds the channel id.
+     *
+     * @return PageExtractor
+     */
+    static PageExtractor newChannelPageExtractor() {
+        return new PageExtractor().add(CHANNEL_IDENTIFIER, true);
+    }
+
+    /**
+     * Get the channel id from a page read by newChannelPageExtractor().
+     *
+     * @param channelPage PageExtractor
+     * @return Channel id, or null if not found
+     */
+    static String getChannelId(PageExtractor channelPage) {
+        return channelPage.get(CHANNEL_IDENTIFIER);
+    }
+
+    private Reader openPage(String url, Map<String, String> header, ChatMetrics.Endpoint endpoint)
+            throws IOException {
+        Reader reader = Util.getPageReader(url, header, this.metrics, endpoint);
+        if (reader == null) {
+            throw new IOException("Couldn't get the page: " + url);
+        }
+        return reader;
+    }
+
     private String getClientVersion() {
         if (this.clientVersion != null) {
             return this.clientVersion;
@@ -865,107 +1159,176 @@ public class YouTubeLiveChat {
         return "2." + format.format(new Date(System.currentTimeMillis() - (24 * 60 * 1000)));
     }
 
-    private String getPayload(long offsetInMs) {
+    /**
+     * Write the payload of get_live_chat or get_live_chat_replay to the buffer reused by every update().
+     * Only continuation and playerOffsetMs are written to the template of this session.
+     */
+    private JsonBuffer getPayload(long offsetInMs) {
         if (offsetInMs < 0) {
             offsetInMs = 0;
         }
-        Map<String, Object> json = new LinkedHashMap<>();
-        Map<String, Object> context = new LinkedHashMap<>();
-        Map<String, Object> client = new LinkedHashMap<>();
-        json.put("context", context);
-        context.put("client", client);
-        if (visitorData != null)
-            client.put("visitorData", this.visitorData);
-        client.put("userAgent", userAgent);
-        client.put("clientName", "WEB");
-        client.put("clientVersion", this.getClientVersion());
-        client.put("gl", this.locale.getCountry());
-        client.put("hl", this.locale.getLanguage());
-        json.put("continuation", this.continuation);
-        if (this.isReplay) {
-            LinkedHashMap<String, Object> state = new LinkedHashMap<>();
-            state.put("playerOffsetMs", String.valueOf(offsetInMs));
-            json.put("currentPlayerState", state);
+        if (this.pollPayloadTemplate == null
+                || !Objects.equals(this.visitorData, this.pollPayloadVisitorData)
+                || !Objects.equals(this.clientVersion, this.pollPayloadClientVersion)
+                || !userAgent.equals(this.pollPayloadUserAgent)
+                || !this.locale.equals(this.pollPayloadLocale)) {
+            this.pollPayloadVisitorData = this.visitorData;
+            this.pollPayloadClientVersion = this.clientVersion;
+            this.pollPayloadUserAgent = userAgent;
+            this.pollPayloadLocale = this.locale;
+            this.pollPayloadTemplate = compilePollPayloadTemplate(this.visitorData, userAgent,
+                    this.getClientVersion(), this.locale);
         }
+        return writePollPayload(this.pollPayload, this.pollPayloadTemplate, this.continuation, this.isReplay,
+                offsetInMs);
+    }
 
-        return Util.toJSON(json);
+    /**
+     * Compile the start of the payload of get_live_chat until the value of continuation.
+     *
+     * @param visitorData   Visitor data, or null
+     * @param userAgent     User agent
+     * @param clientVersion Client version
+     * @param locale        Locale
+     * @return Template
+     */
+    static byte[] compilePollPayloadTemplate(String visitorData, String userAgent, String clientVersion,
+                                             Locale locale) {
+        JsonBuffer json = new JsonBuffer(512).raw("{\"context\":{\"client\":{");
+        if (visitorData != null) {
+            json.raw("\"visitorData\":").string(visitorData).raw(",");
+        }
+        return json.raw("\"userAgent\":").string(userAgent)
+                .raw(",\"clientName\":\"WEB\",\"clientVersion\":").string(clientVersion)
+                .raw(",\"gl\":").string(locale.getCountry())
+                .raw(",\"hl\":").string(locale.getLanguage())
+                .raw("}},\"continuation\":")
+                .toByteArray();
     }
 
-    private String getPayloadToSendMessage(String message) {
-        Map<String, Object> json = new LinkedHashMap<>();
-        Map<String, Object> context = new LinkedHashMap<>();
-        Map<String, Object> user = new LinkedHashMap<>();
-        Map<String, Object> richMessage = new LinkedHashMap<>();
-        Map<String, Object> textSegments = new LinkedHashMap<>();
-        Map<String, Object> client = new LinkedHashMap<>();
-        if (this.commentCounter >= Integer.MAX_VALUE - 1) {
-            this.commentCounter = 0;
-        }
-        json.put("clientMessageId", this.clientMessageId + this.commentCounter++);
-        json.put("context", context);
-        context.put("client", client);
-        client.put("clientName", "WEB");
-        client.put("clientVersion", this.getClientVersion());
-        context.put("user", user);
-        user.put("onBehalfOfUser", datasyncId);
-        json.put("params", this.params);
-        json.put("richMessage", richMessage);
-        richMessage.put("textSegments", textSegments);
-        textSegments.put("text", message);
-
-        return Util.toJSON(json);
+    /**
+     * Write the payload of get_live_chat or get_live_chat_replay.
+     *
+     * @param json         Buffer, which is cleared
+     * @param template     Template made by compilePollPayloadTemplate()
+     * @param continuation Continuation
+     * @param isReplay     Is this replay
+     * @param offsetInMs   Offset of replay in milli seconds
+     * @return json
+     */
+    static JsonBuffer writePollPayload(JsonBuffer json, byte[] template, String continuation, boolean isReplay,
+                                       long offsetInMs) {
+        json.clear().raw(template).string(continuation);
+        if (isReplay) {
+            json.raw(",\"currentPlayerState\":{\"playerOffsetMs\":\"").number(offsetInMs).raw("\"}");
+        }
+        return json.raw("}");
     }
 
-    private String getPayloadClient(String params) {
-        Map<String, Object> json = new LinkedHashMap<>();
-        Map<String, Object> context = new LinkedHashMap<>();
-        Map<String, Object> user = new LinkedHashMap<>();
-        Map<String, Object> client = new LinkedHashMap<>();
-        if (this.commentCounter >= Integer.MAX_VALUE - 1) {
-            this.commentCounter = 0;
+    /**
+     * Get "context" of send_message, get_item_context_menu and moderation.
+     * This is thread-safe. The template is rebuilt when clientVersion or datasyncId is changed.
+     */
+    private byte[] getUserContextTemplate() {
+        String clientVersion = this.clientVersion;
+        String datasyncId = this.datasyncId;
+        UserContext userContext = this.userContext;
+        if (userContext == null || !Objects.equals(clientVersion, userContext.clientVersion)
+                || !Objects.equals(datasyncId, userContext.datasyncId)) {
+            byte[] template = new JsonBuffer(256)
+                    .raw("\"context\":{\"client\":{\"clientName\":\"WEB\",\"clientVersion\":")
+                    .string(clientVersion != null ? clientVersion : this.getClientVersion())
+                    .raw("},\"user\":{\"onBehalfOfUser\":").string(datasyncId)
+                    .raw("}}")
+                    .toByteArray();
+            userContext = new UserContext(clientVersion, datasyncId, template);
+            this.userContext = userContext;
         }
-        json.put("context", context);
-        context.put("client", client);
-        client.put("clientName", "WEB");
-        client.put("clientVersion", this.getClientVersion());
-        context.put("user", user);
-        user.put("onBehalfOfUser", datasyncId);
-        json.put("params", params);
+        return userContext.template;
+    }
 
-        return Util.toJSON(json);
+    private String getPayloadToSendMessage(String message) {
+        int counter = this.commentCounter.getAndUpdate(count -> count >= Integer.MAX_VALUE - 1 ? 0 : count + 1);
+        // clientMessageId consists of letters and '-', so it doesn't need escaping
+        return new JsonBuffer(512)
+                .raw("{\"clientMessageId\":\"").raw(this.clientMessageId).number(counter)
+                .raw("\",").raw(this.getUserContextTemplate())
+                .raw(",\"params\":").string(this.params)
+                .raw(",\"richMessage\":{\"textSegments\":{\"text\":").string(message)
+                .raw("}}}")
+                .toString();
     }
 
+    /**
+     * Get the payload of get_item_context_menu, which has only "context".
+     */
+    private String getPayloadContext() {
+        return new JsonBuffer(256)
+                .raw("{").raw(this.getUserContextTemplate())
+                .raw("}")
+                .toString();
+    }
+
+    private String getPayloadClient(String params) {
+        return new JsonBuffer(512)
+                .raw("{").raw(this.getUserContextTemplate())
+                .raw(",\"params\":").string(params)
+                .raw("}")
+                .toString();
+    }
+
+    /**
+     * Get request header. Don't modify the returned Map.
+     * The header of logged in session is built at most once per second because SAPISIDHASH has time in seconds.
+     */
     private Map<String, String> getHeader() {
-        HashMap<String, String> header = new HashMap<>();
-        if (this.isIDsMissing())
-            return header;
-        String time = System.currentTimeMillis() / 1000 + "";
-        String origin = "https://www.youtube.com";
-        // Find SAPISID
-        String SAPISID = this.cookie != null && this.cookie.containsKey("SAPISID") ? this.cookie.get("SAPISID") : "";
-        String hash = time + " " + SAPISID + " " + origin;
-        byte[] sha1_result = this.getSHA1Engine().digest(hash.getBytes());
-
-        header.put("Authorization",
-                "SAPISIDHASH " + time + "_" + String.format("%040x", new BigInteger(1, sha1_result)));
-        header.put("X-Origin", origin);
-        header.put("Origin", origin);
-        if (this.cookie != null) {
-            StringBuilder cookie = new StringBuilder();
-            for (Map.Entry<String, String> c : this.cookie.entrySet()) {
-                cookie.append(c.getKey()).append("=").append(c.getValue()).append(";");
-            }
-            header.put("Cookie", cookie.toString());
+        if (this.isIDsMissing()) {
+            return Collections.emptyMap();
         }
-        return header;
+        long second = System.currentTimeMillis() / 1000;
+        AuthHeader authHeader = this.authHeader;
+        if (authHeader == null || authHeader.second != second) {
+            // Find SAPISID
+            String sapisid = this.cookie.getOrDefault("SAPISID", "");
+            Map<String, String> header = new HashMap<>();
+            header.put("Authorization", getSAPISIDHash(sha1.get(), String.valueOf(second), sapisid, ORIGIN));
+            header.put("X-Origin", ORIGIN);
+            header.put("Origin", ORIGIN);
+            header.put("Cookie", this.cookieHeader);
+            authHeader = new AuthHeader(second, Collections.unmodifiableMap(header));
+            this.authHeader = authHeader;
+        }
+        return authHeader.header;
     }
 
     public void getContextMenu(ChatItem chatItem) {
         try {
-            String rawJson = Util.getPageContentWithJson(
-                    liveChatContextMenuApi + apiKey + "&params=" + chatItem.contextMenuParams,
-                    getPayloadToSendMessage(""), getHeader());
-            Map<String, Object> json = Util.toJSON(Objects.requireNonNull(rawJson));
+            this.fetchContextMenu(chatItem);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Get params in the context menu of the item, or set cached params.
+     * Errors are recorded to ChatMetrics.
+     * This is called by the thread of update(), ContextMenuPrefetcher and ModerationQueue at the same time,
+     * so it uses only thread-safe payloads and headers.
+     *
+     * @param chatItem ChatItem
+     * @throws IOException Http request error or the response is broken
+     */
+    void fetchContextMenu(ChatItem chatItem) throws IOException {
+        chatItem.decode();
+        ContextMenuCache cache = this.contextMenuCache;
+        if (cache != null && cache.apply(chatItem)) {
+            return;
+        }
+        String rawJson = Util.getPageContentWithJson(
+                liveChatContextMenuApi + apiKey + "&params=" + chatItem.contextMenuParams,
+                this.getPayloadContext(), getHeader(), this.metrics, ChatMetrics.Endpoint.CONTEXT_MENU);
+        try {
+            Map<String, Object> json = Util.toJSON(rawJson);
             List<Object> items = Util.getJSONList(json, "items", "liveChatItemContextMenuSupportedRenderers",
                     "menuRenderer");
             if (items != null) {
@@ -1012,20 +1375,89 @@ public class YouTubeLiveChat {
                     }
                 }
             }
-        } catch (IOException e) {
-            e.printStackTrace();
+        } catch (RuntimeException exception) {
+            this.metrics.recordError(ChatMetrics.ErrorCause.PARSE);
+            throw new IOException("Couldn't parse the context menu!", exception);
+        }
+        if (cache != null) {
+            cache.put(chatItem);
         }
     }
 
-    private MessageDigest getSHA1Engine() {
-        if (this.sha1 == null) {
+    /**
+     * Compute the value of Authorization header.
+     *
+     * @param sha1    SHA-1 MessageDigest
+     * @param time    Current UNIX time in seconds
+     * @param sapisid SAPISID in Cookie
+     * @param origin  Origin
+     * @return SAPISIDHASH
+     */
+    static String getSAPISIDHash(MessageDigest sha1, String time, String sapisid, String origin) {
+        String hash = time + " " + sapisid + " " + origin;
+        byte[] sha1_result = sha1.digest(hash.getBytes(StandardCharsets.UTF_8));
+        StringBuilder result = new StringBuilder(13 + time.length() + sha1_result.length * 2)
+                .append("SAPISIDHASH ").append(time).append('_');
+        for (byte b : sha1_result) {
+            result.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Result or running request of getBroadcastInfo().
+     */
+    private static final class BroadcastInfo {
+        private final CompletableFuture<LiveBroadcastDetails> future = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        private void complete(LiveBroadcastDetails details, long completedAt) {
+            this.completedAt = completedAt;
+            this.future.complete(details);
+        }
+
+        private boolean isExpired(long now) {
+            return this.future.isDone() && this.completedAt + broadcastInfoCacheMs <= now;
+        }
+
+        private LiveBroadcastDetails get() throws IOException {
             try {
-                this.sha1 = MessageDigest.getInstance("SHA-1");
-            } catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
+                return this.future.get();
+            } catch (ExecutionException exception) {
+                throw new IOException("Couldn't get broadcast info!", exception.getCause());
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for broadcast info");
             }
         }
-        return this.sha1;
+    }
+
+    /**
+     * "context" of requests made by the user, and the values it was built from.
+     */
+    private static final class UserContext {
+        private final String clientVersion;
+        private final String datasyncId;
+        private final byte[] template;
+
+        private UserContext(String clientVersion, String datasyncId, byte[] template) {
+            this.clientVersion = clientVersion;
+            this.datasyncId = datasyncId;
+            this.template = template;
+        }
+    }
+
+    /**
+     * Request header of logged in session at a second.
+     */
+    private static final class AuthHeader {
+        private final long second;
+        private final Map<String, String> header;
+
+        private AuthHeader(long second, Map<String, String> header) {
+            this.second = second;
+            this.header = header;
+        }
     }
 
     /**
@@ -1091,11 +1523,13 @@ public class YouTubeLiveChat {
         if (id.contains("youtube.com/")) {
             if (!id.contains("channel/") && (id.startsWith("http://") || id.startsWith("https://"))) {
                 try {
-                    String html = Util.getPageContent(id, new HashMap<>());
-                    Matcher matcher = Pattern.compile("<meta itemprop=\"identifier\" content=\"([^\"]*)\"")
-                            .matcher(html);
-                    if (matcher.find()) {
-                        return matcher.group(1);
+                    Reader reader = Util.getPageReader(id, Collections.emptyMap());
+                    if (reader != null) {
+                        PageExtractor channelPage = newChannelPageExtractor();
+                        channelPage.extract(reader);
+                        if (getChannelId(channelPage) != null) {
+                            return getChannelId(channelPage);
+                        }
                     }
                 } catch (IOException ignore) {
                 }
@@ -1116,24 +1550,158 @@ public class YouTubeLiveChat {
     }
 
     /**
-     * Get broadcast info
+     * Get broadcast info.
+     * The result is reused for broadcastInfoCacheMs, and calls for the same video at the same time share one request.
      *
      * @return LiveBroadcastDetails obj
      *
      * @throws IOException Couldn't get broadcast info
      */
     public LiveBroadcastDetails getBroadcastInfo() throws IOException {
-        try {
-            String url = liveStreamInfoApi + this.videoId + "&hl=en&pbj=1";
-            HashMap<String, String> header = new HashMap<>();
-            header.put("x-youtube-client-name", "1");
-            header.put("x-youtube-client-version", getClientVersion());
-            String response = Util.getPageContent(url, header);
-            JsonElement jsonElement = JsonParser.parseString(Objects.requireNonNull(response)).getAsJsonObject();
-            JsonElement liveBroadcastDetails = Util.searchJsonElementByKey("liveBroadcastDetails", jsonElement);
-            return gson.fromJson(liveBroadcastDetails, LiveBroadcastDetails.class);
-        } catch (IOException | NullPointerException exception) {
+        String videoId = this.videoId;
+        String key = this.liveStreamInfoApi + videoId;
+        while (true) {
+            BroadcastInfo info = broadcastInfos.get(key);
+            if (info != null && !info.isExpired(System.currentTimeMillis())) {
+                return info.get().copy();
+            }
+            BroadcastInfo newInfo = new BroadcastInfo();
+            if (info == null ? broadcastInfos.putIfAbsent(key, newInfo) != null
+                    : !broadcastInfos.replace(key, info, newInfo)) {
+                // Another thread started a request
+                continue;
+            }
+            try {
+                LiveBroadcastDetails details = this.requestBroadcastInfo(videoId);
+                newInfo.complete(details, System.currentTimeMillis());
+                return details.copy();
+            } catch (IOException | RuntimeException exception) {
+                broadcastInfos.remove(key, newInfo);
+                newInfo.future.completeExceptionally(exception);
+                throw exception;
+            } finally {
+                if (broadcastInfos.size() > BROADCAST_INFO_CLEANUP_SIZE) {
+                    long now = System.currentTimeMillis();
+                    broadcastInfos.values().removeIf(entry -> entry.isExpired(now));
+                }
+            }
+        }
+    }
+
+    /**
+     * Read liveBroadcastDetails in the watch page json. The rest of the response is not downloaded.
+     */
+    private LiveBroadcastDetails requestBroadcastInfo(String videoId) throws IOException {
+        String url = liveStreamInfoApi + videoId + "&hl=en&pbj=1";
+        HashMap<String, String> header = new HashMap<>();
+        header.put("x-youtube-client-name", "1");
+        header.put("x-youtube-client-version", getClientVersion());
+        Reader response = Util.getPageReader(url, header, this.metrics, ChatMetrics.Endpoint.BROADCAST_INFO);
+        if (response == null) {
+            throw new IOException("Couldn't get broadcast info!");
+        }
+        try (JsonReader reader = new JsonReader(response)) {
+            LiveBroadcastDetails details = null;
+            if (Util.findJsonName(reader, "liveBroadcastDetails")) {
+                details = gson.fromJson(reader, LiveBroadcastDetails.class);
+            }
+            if (details == null) {
+                throw new IOException("Couldn't get broadcast info!");
+            }
+            return details;
+        } catch (JsonParseException exception) {
             throw new IOException("Couldn't get broadcast info!", exception);
         }
     }
+
+    /**
+     * Stores parsed items and passes them to the listeners.
+     */
+    private class Dispatcher implements ChatListener {
+        /**
+         * Drop a duplicated item and store a new item.
+         *
+         * @return If the item is new, returns true.
+         */
+        private boolean accept(ChatItem chatItem) {
+            if (recentIds != null && !recentIds.add(chatItem.id)) {
+                return false;
+            }
+            metrics.recordItem(chatItem.type);
+            if (isChatItemListEnabled) {
+                chatItems.add(chatItem);
+            }
+            return true;
+        }
+
+        @Override
+        public void onMessage(ChatItem chatItem) {
+            if (!this.accept(chatItem)) {
+                return;
+            }
+            for (ChatListener listener : listeners) {
+                listener.onMessage(chatItem);
+            }
+        }
+
+        @Override
+        public void onPaidMessage(ChatItem chatItem) {
+            if (!this.accept(chatItem)) {
+                return;
+            }
+            for (ChatListener listener : listeners) {
+                listener.onPaidMessage(chatItem);
+            }
+        }
+
+        @Override
+        public void onPaidSticker(ChatItem chatItem) {
+            if (!this.accept(chatItem)) {
+                return;
+            }
+            for (ChatListener listener : listeners) {
+                listener.onPaidSticker(chatItem);
+            }
+        }
+
+        @Override
+        public void onNewMember(ChatItem chatItem) {
+            if (!this.accept(chatItem)) {
+                return;
+            }
+            for (ChatListener listener : listeners) {
+                listener.onNewMember(chatItem);
+            }
+        }
+
+        @Override
+        public void onTickerPaidMessage(ChatItem chatItem) {
+            metrics.recordItem(chatItem.type);
+            if (isChatItemListEnabled) {
+                chatItemTickerPaidMessages.add(chatItem);
+            }
+            for (ChatListener listener : listeners) {
+                listener.onTickerPaidMessage(chatItem);
+            }
+        }
+
+        @Override
+        public void onDelete(ChatItemDelete chatItemDelete) {
+            metrics.recordDelete();
+            if (isChatItemListEnabled) {
+                chatItemDeletes.add(chatItemDelete);
+            }
+            for (ChatListener listener : listeners) {
+                listener.onDelete(chatItemDelete);
+            }
+        }
+
+        @Override
+        public void onBannerChanged(ChatItem chatItem) {
+            bannerItem = chatItem;
+            for (ChatListener listener : listeners) {
+                listener.onBannerChanged(chatItem);
+            }
+        }
+    }
 }